@@ -0,0 +1,92 @@
+package org.gradle.plugins.nbm.integtest
+
+import org.gradle.testkit.runner.TaskOutcome
+
+class ApiElementsTest extends AbstractIntegrationTest {
+    def "dependent module compiles against the API JAR and is not recompiled for implementation changes"() {
+        new File(integTestDir, 'settings.gradle').text = "include 'api', 'consumer'\n"
+        buildFile << \
+"""
+subprojects {
+    apply plugin: 'java'
+    apply plugin: org.gradle.plugins.nbm.NbmPlugin
+}
+
+project(':api') {
+    nbm {
+        moduleName = 'com.foo.api'
+        publicPackages {
+            add 'com.foo.api'
+        }
+    }
+}
+
+project(':consumer') {
+    nbm {
+        moduleName = 'com.foo.consumer'
+    }
+    dependencies {
+        implementation project(':api')
+    }
+    tasks.register('printCompileClasspath') {
+        def files = configurations.compileClasspath
+        doLast {
+            files.each { println "compileClasspath: \${it.name}" }
+        }
+    }
+}
+"""
+        createProjectFile('api', 'src', 'main', 'java', 'com', 'foo', 'api', 'Service.java') << \
+"""
+package com.foo.api;
+public interface Service {
+    String name();
+}
+"""
+        def implFile = createProjectFile('api', 'src', 'main', 'java', 'com', 'foo', 'impl', 'ServiceImpl.java')
+        implFile << \
+"""
+package com.foo.impl;
+public class ServiceImpl implements com.foo.api.Service {
+    public String name() {
+        return "first";
+    }
+}
+"""
+        createProjectFile('consumer', 'src', 'main', 'java', 'com', 'foo', 'consumer', 'Client.java') << \
+"""
+package com.foo.consumer;
+public class Client {
+    public String call(com.foo.api.Service service) {
+        return service.name();
+    }
+}
+"""
+
+        when:
+        def first = runTasks 'consumer:compileJava', 'consumer:printCompileClasspath'
+
+        then: "the API JAR is resolved without ambiguity"
+        first.task(':api:apiJar').outcome == TaskOutcome.SUCCESS
+        first.output.contains('compileClasspath: api-api.jar')
+
+        when: "a class outside of the public packages changes its API"
+        implFile.text = \
+"""
+package com.foo.impl;
+public class ServiceImpl implements com.foo.api.Service {
+    public String name() {
+        return "second";
+    }
+    public String description() {
+        return "new public method";
+    }
+}
+"""
+        def second = runTasks 'consumer:compileJava'
+
+        then: "the module is rebuilt, the dependent module stays up to date"
+        second.task(':api:compileJava').outcome == TaskOutcome.SUCCESS
+        second.task(':consumer:compileJava').outcome == TaskOutcome.UP_TO_DATE
+    }
+}
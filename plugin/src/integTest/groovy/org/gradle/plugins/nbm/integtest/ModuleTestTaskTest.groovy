@@ -0,0 +1,112 @@
+package org.gradle.plugins.nbm.integtest
+
+import groovy.xml.XmlSlurper
+
+import static org.hamcrest.MatcherAssert.assertThat
+import static org.hamcrest.Matchers.not
+
+class ModuleTestTaskTest extends AbstractIntegrationTest {
+    def "module system tests run in the booted module system next to plain unit tests"() {
+        buildFile << \
+"""
+apply plugin: 'java'
+apply plugin: org.gradle.plugins.nbm.NbmPlugin
+
+nbm {
+  moduleName = 'com.foo.acme'
+  platformDir = layout.buildDirectory.dir('platform')
+}
+
+configurations {
+  platformLib { transitive = false }
+  platformCore { transitive = false }
+  testCompileOnly.extendsFrom platformLib, platformCore
+}
+
+dependencies {
+  platformLib 'org.netbeans.modules:org-netbeans-bootstrap:${nbVersion}'
+  platformLib 'org.netbeans.api:org-openide-modules:${nbVersion}'
+  platformLib 'org.netbeans.api:org-openide-util:${nbVersion}'
+  platformLib 'org.netbeans.api:org-openide-util-lookup:${nbVersion}'
+  platformLib 'org.netbeans.api:org-openide-util-ui:${nbVersion}'
+  platformCore 'org.netbeans.modules:org-netbeans-core-startup:${nbVersion}'
+  platformCore 'org.netbeans.modules:org-netbeans-core-startup-base:${nbVersion}'
+  platformCore 'org.netbeans.api:org-openide-filesystems:${nbVersion}'
+
+  testImplementation 'org.junit.jupiter:junit-jupiter:5.10.0'
+}
+
+// minimal platform cluster booting the module system
+task platform(type: Sync) {
+  into layout.buildDirectory.dir('platform/platform')
+  into('lib') { from configurations.platformLib }
+  into('core') { from configurations.platformCore }
+  rename '(.*)-${nbVersion}\\\\.jar', '\$1.jar'
+  rename 'org-netbeans-bootstrap.jar', 'boot.jar'
+}
+moduleTest.dependsOn platform
+"""
+        def srcDir = createNewDir(integTestDir, 'src/main/java/com/foo/acme')
+        createNewFile(srcDir, 'Greeter.java') << \
+"""
+package com.foo.acme;
+public class Greeter {
+    public static String greet() {
+        return "Hello";
+    }
+}
+"""
+        def testDir = createNewDir(integTestDir, 'src/test/java/com/foo/acme')
+        createNewFile(testDir, 'GreeterTest.java') << \
+"""
+package com.foo.acme;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+class GreeterTest {
+    @Test
+    void greets() {
+        assertEquals("Hello", Greeter.greet());
+    }
+}
+"""
+        def moduleTestDir = createNewDir(integTestDir, 'src/moduleTest/java/com/foo/acme')
+        createNewFile(moduleTestDir, 'GreeterInModuleSystemTest.java') << \
+"""
+package com.foo.acme;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.openide.util.Lookup;
+
+class GreeterInModuleSystemTest {
+    // the module system is booted by the plugin
+    @Test
+    void loadsGreeterFromModuleSystem() throws Exception {
+        ClassLoader systemLoader = Lookup.getDefault().lookup(ClassLoader.class);
+        Class<?> greeter = systemLoader.loadClass("com.foo.acme.Greeter");
+
+        assertEquals("Hello", greeter.getMethod("greet").invoke(null));
+        assertNotSame(getClass().getClassLoader(), greeter.getClassLoader());
+        assertThrows(ClassNotFoundException.class,
+            () -> Class.forName("com.foo.acme.Greeter", false, getClass().getClassLoader()));
+    }
+}
+"""
+
+        when:
+        runTasks 'test', 'moduleTest'
+
+        then:
+        def unitResults = getInBuildDir('test-results/test/TEST-com.foo.acme.GreeterTest.xml')
+        assertThat unitResults, FileMatchers.exists()
+        assert new XmlSlurper().parse(unitResults).@failures.text() == '0'
+        assertThat getInBuildDir('test-results/moduleTest/TEST-com.foo.acme.GreeterTest.xml'), not(FileMatchers.exists())
+
+        def results = getInBuildDir('test-results/moduleTest/TEST-com.foo.acme.GreeterInModuleSystemTest.xml')
+        assertThat results, FileMatchers.exists()
+        def suite = new XmlSlurper().parse(results)
+        assert suite.@tests.text() == '1'
+        assert suite.@failures.text() == '0'
+        assert suite.@errors.text() == '0'
+    }
+}
@@ -0,0 +1,111 @@
+package org.gradle.plugins.nbm
+
+import org.gradle.api.DefaultTask
+import org.gradle.api.GradleException
+import org.gradle.api.file.ConfigurableFileCollection
+import org.gradle.api.file.DirectoryProperty
+import org.gradle.api.file.FileSystemOperations
+import org.gradle.api.file.RegularFileProperty
+import org.gradle.api.provider.ListProperty
+import org.gradle.api.provider.Property
+import org.gradle.api.tasks.Input
+import org.gradle.api.tasks.InputFile
+import org.gradle.api.tasks.InputFiles
+import org.gradle.api.tasks.Internal
+import org.gradle.api.tasks.Optional
+import org.gradle.api.tasks.OutputFile
+import org.gradle.api.tasks.PathSensitive
+import org.gradle.api.tasks.PathSensitivity
+import org.gradle.api.tasks.TaskAction
+import org.gradle.process.ExecOperations
+
+import javax.inject.Inject
+
+/**
+ * Runs a scripted training launch of NetBeans with the module cluster installed and
+ * records the loaded classes into a dynamic AppCDS archive.
+ * <p>
+ * The inputs of the task are the module JARs and the JDK the launcher runs on, so the archive
+ * is regenerated only when their content changes. An archive is accepted only by the exact JVM
+ * which recorded it, so the training launch and the {@code run} task pass the JDK explicitly.
+ */
+abstract class CdsArchiveTask extends DefaultTask {
+
+    @Inject
+    protected abstract ExecOperations getExecOperations()
+
+    @Inject
+    protected abstract FileSystemOperations getFileSystemOperations()
+
+    @Internal
+    abstract DirectoryProperty getModuleBuildDir()
+
+    @InputFiles
+    @PathSensitive(PathSensitivity.RELATIVE)
+    abstract ConfigurableFileCollection getModuleJars()
+
+    @Input
+    @Optional
+    abstract Property<String> getNetBeansExecutable()
+
+    @Input
+    abstract ListProperty<String> getTrainingArguments()
+
+    /**
+     * JDK the launcher runs on, see {@link NetBeansLaunchUtils#findLauncherJdkHome}.
+     */
+    @Input
+    @Optional
+    abstract Property<String> getJdkHome()
+
+    /**
+     * The {@code release} file of the JDK, it identifies the exact version and build of the JDK.
+     */
+    @InputFile
+    @Optional
+    @PathSensitive(PathSensitivity.NONE)
+    abstract RegularFileProperty getJdkReleaseFile()
+
+    @Internal
+    abstract DirectoryProperty getTrainingUserDir()
+
+    @OutputFile
+    abstract RegularFileProperty getArchiveFile()
+
+    @TaskAction
+    void generate() {
+        String executable = netBeansExecutable.getOrNull()
+        if (executable == null) {
+            throw NetBeansLaunchUtils.missingExecutable()
+        }
+
+        def archive = archiveFile.get().asFile
+        def userDir = trainingUserDir.get().asFile
+        fileSystemOperations.delete {
+            delete archive, userDir
+        }
+        archive.parentFile.mkdirs()
+
+        NetBeansLaunchUtils.writeExtraClustersConf(userDir.toPath(), moduleBuildDir.get().asFile.toPath())
+
+        List<String> args = [executable, '--userdir', userDir.path, "-J-XX:ArchiveClassesAtExit=${archive.path}".toString()]
+        String jdk = jdkHome.getOrNull()
+        if (jdk != null) {
+            args.addAll(['--jdkhome', jdk])
+        } else {
+            logger.warn "The JDK of $executable is not known, set netbeans_jdkhome in its netbeans.conf or JAVA_HOME " +
+                "so that the archive is regenerated when the JDK changes"
+        }
+        args.addAll(trainingArguments.get())
+
+        logger.info "Recording class-data sharing archive $archive"
+        execOperations.exec {
+            commandLine args
+        }
+
+        if (!archive.isFile()) {
+            throw new GradleException("The training launch did not produce a class-data sharing archive at ${archive}. " +
+                "Dynamic archives require NetBeans to run on JDK 13 or newer and to exit normally.")
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package org.gradle.plugins.nbm
+
+import groovy.io.FileType
+import org.gradle.api.DefaultTask
+import org.gradle.api.file.DirectoryProperty
+import org.gradle.api.file.RegularFileProperty
+import org.gradle.api.provider.Property
+import org.gradle.api.tasks.Internal
+import org.gradle.api.tasks.TaskAction
+import org.gradle.process.ExecOperations
+
+import javax.inject.Inject
+
+import java.security.MessageDigest
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Development mode for {@code --continuous} builds.
+ * <p>
+ * The first execution starts NetBeans with the module cluster in the background. Subsequent
+ * executions send {@code --reload} of the module JAR to the running instance through the NetBeans
+ * command line socket, but only when the module JAR or one of its ext JARs changed since the
+ * last push.
+ * <p>
+ * The instance is running when the process started by this task is alive, or, after the Gradle
+ * daemon was restarted, when the command line port recorded in the lock file of the user
+ * directory accepts connections. A lock file left by a crashed instance is deleted and a new
+ * instance is started. While a started instance has not opened its port yet, the reload is
+ * postponed to the next build, as {@code --reload} would start another instance otherwise.
+ */
+abstract class HotReloadTask extends DefaultTask {
+    private static final String LOCK_FILE_NAME = 'lock'
+    // the lock file holds the key of the command line socket followed by its port
+    private static final int LOCK_KEY_LENGTH = 10
+    private static final int CONNECT_TIMEOUT_MS = 1000
+
+    // instances started by this daemon by their user directory, kept across continuous builds
+    private static final Map<String, Process> STARTED_INSTANCES = new ConcurrentHashMap<>()
+
+    @Inject
+    protected abstract ExecOperations getExecOperations()
+
+    @Internal
+    abstract DirectoryProperty getModuleBuildDir()
+
+    @Internal
+    abstract Property<String> getModuleJarFileName()
+
+    @Internal
+    abstract Property<String> getNetBeansExecutable()
+
+    @Internal
+    abstract DirectoryProperty getUserDir()
+
+    /**
+     * Hashes of the module JARs pushed to the running instance.
+     */
+    @Internal
+    abstract RegularFileProperty getStateFile()
+
+    @Internal
+    abstract RegularFileProperty getLogFile()
+
+    HotReloadTask() {
+        doNotTrackState("Talks to a running NetBeans instance")
+    }
+
+    @TaskAction
+    void reload() {
+        String executable = netBeansExecutable.getOrNull()
+        if (executable == null) {
+            throw NetBeansLaunchUtils.missingExecutable()
+        }
+
+        def clusterDir = moduleBuildDir.get().asFile
+        def userDirFile = userDir.get().asFile
+        def moduleJar = new File(clusterDir, 'modules' + File.separator + moduleJarFileName.get())
+        Properties jarHashes = hashJars(new File(clusterDir, 'modules'))
+
+        def lockFile = new File(userDirFile, LOCK_FILE_NAME)
+        Process started = STARTED_INSTANCES.get(userDirFile.absolutePath)
+        Integer port = readCliPort(lockFile)
+        boolean listening = port != null && isListening(port)
+        if (!listening) {
+            if (started?.isAlive()) {
+                logger.lifecycle 'NetBeans is still starting, the module will be reloaded by the next build'
+                return
+            }
+            if (lockFile.exists()) {
+                logger.lifecycle "Deleting $lockFile of a NetBeans instance which is not running"
+                lockFile.delete()
+            }
+            STARTED_INSTANCES.put(userDirFile.absolutePath, startNetBeans(executable, userDirFile, clusterDir))
+            storeState(jarHashes)
+            return
+        }
+
+        def changedJars = changedJars(jarHashes, loadState())
+        if (changedJars.isEmpty()) {
+            logger.lifecycle 'No module JAR changed, nothing to reload'
+            return
+        }
+
+        // ext JARs are loaded by the class loader of the module, so any change reloads the module
+        logger.lifecycle "Reloading $moduleJar in the running NetBeans instance, changed: ${changedJars.join(', ')}"
+        execOperations.exec {
+            commandLine executable, '--userdir', userDirFile.path, '--reload', moduleJar.path
+        }
+        storeState(jarHashes)
+    }
+
+    private Process startNetBeans(String executable, File userDirFile, File clusterDir) {
+        NetBeansLaunchUtils.writeExtraClustersConf(userDirFile.toPath(), clusterDir.toPath())
+
+        def log = logFile.get().asFile
+        log.parentFile.mkdirs()
+        def process = new ProcessBuilder(executable, '--userdir', userDirFile.path)
+            .redirectErrorStream(true)
+            .redirectOutput(log)
+            .start()
+        logger.lifecycle "Started NetBeans in the background (output in $log), " +
+            "changes of the module will be reloaded into it by the next builds"
+        return process
+    }
+
+    /**
+     * Port of the command line socket recorded in the lock file of a user directory.
+     *
+     * @return the port or {@code null} if there is no lock file or it is not completely written yet
+     */
+    static Integer readCliPort(File lockFile) {
+        if (!lockFile.isFile() || lockFile.length() < LOCK_KEY_LENGTH + 4) {
+            return null
+        }
+        return new DataInputStream(new FileInputStream(lockFile)).withCloseable { input ->
+            input.skipBytes(LOCK_KEY_LENGTH)
+            int port = input.readInt()
+            port > 0 && port <= 0xFFFF ? port : null
+        }
+    }
+
+    static boolean isListening(int port) {
+        try {
+            new Socket().withCloseable { socket ->
+                socket.connect(new InetSocketAddress(InetAddress.loopbackAddress, port), CONNECT_TIMEOUT_MS)
+            }
+            return true
+        } catch (IOException ignored) {
+            return false
+        }
+    }
+
+    /**
+     * Paths of the JARs added, changed or removed since the last push, sorted.
+     */
+    static List<String> changedJars(Properties jarHashes, Properties pushed) {
+        Set<String> paths = new TreeSet<>(jarHashes.stringPropertyNames())
+        paths.addAll(pushed.stringPropertyNames())
+        return paths.findAll { jarHashes.getProperty(it) != pushed.getProperty(it) }.toList()
+    }
+
+    static Properties hashJars(File modulesDir) {
+        Properties result = new Properties()
+        if (!modulesDir.isDirectory()) {
+            return result
+        }
+        modulesDir.eachFileRecurse(FileType.FILES) { File file ->
+            if (file.name.endsWith('.jar')) {
+                def digest = MessageDigest.getInstance('SHA-256')
+                file.eachByte(64 * 1024) { byte[] buffer, int length -> digest.update(buffer, 0, length) }
+                String path = modulesDir.toPath().relativize(file.toPath()).toString().replace(File.separator, '/')
+                result.setProperty(path, digest.digest().encodeHex().toString())
+            }
+        }
+        return result
+    }
+
+    private Properties loadState() {
+        Properties result = new Properties()
+        def state = stateFile.get().asFile
+        if (state.isFile()) {
+            state.withInputStream { result.load(it) }
+        }
+        return result
+    }
+
+    private void storeState(Properties jarHashes) {
+        def state = stateFile.get().asFile
+        state.parentFile.mkdirs()
+        state.withOutputStream { jarHashes.store(it, null) }
+    }
+}
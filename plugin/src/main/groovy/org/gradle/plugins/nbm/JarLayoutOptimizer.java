@@ -0,0 +1,236 @@
+package org.gradle.plugins.nbm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Rewrites JAR files so that the entries loaded during startup come first, in load order,
+ * and are stored uncompressed. All other entries keep their original order and compression.
+ * <p>
+ * Entries of {@code META-INF/} always stay in front of the startup entries, with the manifest
+ * first, so that the manifest and the signature files of signed JARs are found by
+ * {@code JarInputStream}.
+ * <p>
+ * Rewritten JARs are cached by the hash of the original JAR content and of the startup order.
+ * {@link #pruneCache()} removes the cached JARs not used since the optimizer was created.
+ */
+final class JarLayoutOptimizer {
+    private static final Pattern CLASS_LOAD_LINE = Pattern.compile("\\]\\s+(\\S+)\\s+source:\\s+(.+)$");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Map<String, Integer> startupIndex;
+    private final Path cacheDir;
+    private final String startupOrderHash;
+    private final Set<Path> usedCacheFiles = ConcurrentHashMap.newKeySet();
+
+    JarLayoutOptimizer(List<String> startupOrder, Path cacheDir) {
+        this.cacheDir = Objects.requireNonNull(cacheDir, "cacheDir");
+
+        this.startupIndex = new HashMap<>();
+        for (String entry : startupOrder) {
+            startupIndex.putIfAbsent(entry, startupIndex.size());
+        }
+        MessageDigest digest = newDigest();
+        digest.update(String.join("\n", startupOrder).getBytes(StandardCharsets.UTF_8));
+        this.startupOrderHash = toHex(digest.digest());
+    }
+
+    /**
+     * Reads the order of the JAR entries from a {@code -Xlog:class+load} log. Only classes loaded
+     * from a source containing {@code sourceFilter} are returned.
+     */
+    static List<String> parseClassLoadLog(List<String> logLines, String sourceFilter) {
+        Set<String> entries = new LinkedHashSet<>();
+        for (String line : logLines) {
+            Matcher matcher = CLASS_LOAD_LINE.matcher(line);
+            if (matcher.find() && matcher.group(2).contains(sourceFilter)) {
+                entries.add(matcher.group(1).replace('.', '/') + ".class");
+            }
+        }
+        return new ArrayList<>(entries);
+    }
+
+    static List<String> readStartupOrder(Path orderFile) throws IOException {
+        List<String> entries = new ArrayList<>();
+        for (String line : Files.readAllLines(orderFile, StandardCharsets.UTF_8)) {
+            String entry = line.trim();
+            if (!entry.isEmpty() && !entry.startsWith("#")) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Rewrites the JAR in place.
+     *
+     * @return entries of the JAR which are part of the startup order, in load order
+     */
+    List<String> optimize(Path jar) throws IOException {
+        List<String> hotEntries = new ArrayList<>();
+        try (ZipFile zip = new ZipFile(jar.toFile())) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                if (startupIndex.containsKey(name) && !isMetaInf(name)) {
+                    hotEntries.add(name);
+                }
+            }
+        }
+        if (hotEntries.isEmpty()) {
+            return hotEntries;
+        }
+        hotEntries.sort((first, second) -> Integer.compare(startupIndex.get(first), startupIndex.get(second)));
+
+        Path cached = cacheDir.resolve(hash(jar) + "-" + startupOrderHash + ".jar");
+        usedCacheFiles.add(cached);
+        if (!Files.isRegularFile(cached)) {
+            Files.createDirectories(cacheDir);
+            Path tmp = Files.createTempFile(cacheDir, "layout", ".tmp");
+            try {
+                rewrite(jar, tmp, hotEntries);
+                Files.move(tmp, cached, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        }
+        Files.copy(cached, jar, StandardCopyOption.REPLACE_EXISTING);
+        return hotEntries;
+    }
+
+    /**
+     * Deletes the cached JARs which were not used by this optimizer, they belong to previous
+     * versions of the JARs or to another startup order.
+     */
+    void pruneCache() throws IOException {
+        if (!Files.isDirectory(cacheDir)) {
+            return;
+        }
+        List<Path> unused;
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            unused = files.filter(file -> !usedCacheFiles.contains(file)).collect(Collectors.toList());
+        }
+        for (Path file : unused) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void rewrite(Path source, Path target, List<String> hotEntries) throws IOException {
+        Set<String> hot = new LinkedHashSet<>(hotEntries);
+        try (ZipFile zip = new ZipFile(source.toFile());
+             OutputStream fileOutput = Files.newOutputStream(target);
+             ZipOutputStream output = new ZipOutputStream(fileOutput)) {
+            List<ZipEntry> manifest = new ArrayList<>();
+            List<ZipEntry> leading = new ArrayList<>();
+            List<ZipEntry> remaining = new ArrayList<>();
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName();
+                // JarInputStream expects the manifest at the beginning of the archive, followed by the signature files
+                if (name.equalsIgnoreCase("META-INF/") || name.equalsIgnoreCase("META-INF/MANIFEST.MF")) {
+                    manifest.add(entry);
+                } else if (isMetaInf(name)) {
+                    leading.add(entry);
+                } else if (!hot.contains(name)) {
+                    remaining.add(entry);
+                }
+            }
+
+            for (ZipEntry entry : manifest) {
+                copyEntry(zip, entry, output, false);
+            }
+            for (ZipEntry entry : leading) {
+                copyEntry(zip, entry, output, false);
+            }
+            for (String name : hot) {
+                copyEntry(zip, zip.getEntry(name), output, true);
+            }
+            for (ZipEntry entry : remaining) {
+                copyEntry(zip, entry, output, false);
+            }
+        }
+    }
+
+    private static boolean isMetaInf(String name) {
+        return name.toUpperCase(Locale.ROOT).startsWith("META-INF/");
+    }
+
+    static void copyEntry(ZipFile zip, ZipEntry entry, ZipOutputStream output, boolean stored)
+        throws IOException {
+        ZipEntry copy = new ZipEntry(entry.getName());
+        copy.setTime(entry.getTime());
+        copy.setComment(entry.getComment());
+        copy.setExtra(entry.getExtra());
+        if (stored || entry.getMethod() == ZipEntry.STORED) {
+            copy.setMethod(ZipEntry.STORED);
+            copy.setSize(entry.getSize());
+            copy.setCompressedSize(entry.getSize());
+            copy.setCrc(entry.getCrc());
+        } else {
+            copy.setMethod(ZipEntry.DEFLATED);
+        }
+
+        output.putNextEntry(copy);
+        try (InputStream input = zip.getInputStream(entry)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                output.write(buffer, 0, read);
+            }
+        }
+        output.closeEntry();
+    }
+
+    static String hash(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        try (InputStream input = Files.newInputStream(file)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static String toHex(byte[] digest) {
+        StringBuilder result = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            result.append(String.format("%02x", b & 0xff));
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,161 @@
+package org.gradle.plugins.nbm;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Moves localized and branded resource bundles of a module JAR into locale JARs next to it,
+ * {@code modules/locale/<module>_<suffix>.jar}, where the module system looks them up only
+ * for the active locale and branding.
+ * <p>
+ * A bundle {@code Bundle_<suffix>.properties} is moved only when the JAR also contains its
+ * base bundle {@code Bundle.properties}, so that other properties files with an underscore
+ * in their name stay in the module JAR.
+ */
+final class LocaleJarSplitter {
+    static final String LOCALE_DIR_NAME = "locale";
+
+    private static final String PROPERTIES_EXTENSION = ".properties";
+    private static final Pattern SUFFIX = Pattern.compile("[A-Za-z0-9]+(?:_[A-Za-z0-9]+)*");
+
+    private LocaleJarSplitter() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Locale and branding suffix of a resource bundle of the JAR, for example {@code ja} for
+     * {@code com/foo/Bundle_ja.properties} or {@code nb_ja} for {@code com/foo/Bundle_nb_ja.properties}.
+     *
+     * @return the suffix or {@code null} if the entry is not a localized variant of another bundle
+     */
+    static String localeSuffix(String entryName, Set<String> entryNames) {
+        if (!entryName.endsWith(PROPERTIES_EXTENSION)) {
+            return null;
+        }
+        int nameStart = entryName.lastIndexOf('/') + 1;
+        String withoutExtension = entryName.substring(0, entryName.length() - PROPERTIES_EXTENSION.length());
+        // the shortest base bundle wins, Bundle_pt_BR is the pt_BR variant of Bundle even if Bundle_pt exists
+        for (int separator = withoutExtension.indexOf('_', nameStart + 1);
+             separator > 0;
+             separator = withoutExtension.indexOf('_', separator + 1)) {
+            String suffix = withoutExtension.substring(separator + 1);
+            String baseBundle = withoutExtension.substring(0, separator) + PROPERTIES_EXTENSION;
+            if (SUFFIX.matcher(suffix).matches() && entryNames.contains(baseBundle)) {
+                return suffix;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Moves the localized bundles of the module JAR into locale JARs in the {@code locale}
+     * directory next to it. Locale JARs of the module left over from earlier builds are deleted.
+     * The module JAR and the locale JARs keep the modification time of the original module JAR.
+     *
+     * @return the written locale JARs by their suffix
+     */
+    static Map<String, Path> split(Path moduleJar) throws IOException {
+        deleteLocaleJars(moduleJar);
+        String jarBaseName = jarBaseName(moduleJar);
+        Path localeDir = moduleJar.resolveSibling(LOCALE_DIR_NAME);
+
+        Map<String, List<ZipEntry>> localized = new TreeMap<>();
+        List<ZipEntry> remaining = new ArrayList<>();
+        Map<String, Path> result = new TreeMap<>();
+        FileTime lastModified = Files.getLastModifiedTime(moduleJar);
+        Path tmp = Files.createTempFile(moduleJar.getParent(), jarBaseName, ".tmp");
+        try {
+            try (ZipFile zip = new ZipFile(moduleJar.toFile())) {
+                Set<String> entryNames = new HashSet<>();
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    entryNames.add(entries.nextElement().getName());
+                }
+
+                entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    String suffix = localeSuffix(entry.getName(), entryNames);
+                    if (suffix != null) {
+                        localized.computeIfAbsent(suffix, key -> new ArrayList<>()).add(entry);
+                    } else {
+                        remaining.add(entry);
+                    }
+                }
+
+                if (localized.isEmpty()) {
+                    return result;
+                }
+
+                Files.createDirectories(localeDir);
+                for (Map.Entry<String, List<ZipEntry>> locale : localized.entrySet()) {
+                    Path localeJar = localeDir.resolve(jarBaseName + "_" + locale.getKey() + ".jar");
+                    writeLocaleJar(zip, locale.getValue(), localeJar);
+                    Files.setLastModifiedTime(localeJar, lastModified);
+                    result.put(locale.getKey(), localeJar);
+                }
+
+                try (OutputStream fileOutput = Files.newOutputStream(tmp);
+                     ZipOutputStream output = new ZipOutputStream(fileOutput)) {
+                    for (ZipEntry entry : remaining) {
+                        JarLayoutOptimizer.copyEntry(zip, entry, output, false);
+                    }
+                }
+            }
+            Files.move(tmp, moduleJar, StandardCopyOption.REPLACE_EXISTING);
+            Files.setLastModifiedTime(moduleJar, lastModified);
+            return result;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static String jarBaseName(Path jar) {
+        return jar.getFileName().toString().replaceFirst("\\.jar$", "");
+    }
+
+    private static void writeLocaleJar(ZipFile zip, List<ZipEntry> entries, Path localeJar) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        try (OutputStream fileOutput = Files.newOutputStream(localeJar);
+             JarOutputStream output = new JarOutputStream(fileOutput, manifest)) {
+            for (ZipEntry entry : entries) {
+                JarLayoutOptimizer.copyEntry(zip, entry, output, false);
+            }
+        }
+    }
+
+    /**
+     * Deletes the locale JARs of the module JAR.
+     */
+    static void deleteLocaleJars(Path moduleJar) throws IOException {
+        Path localeDir = moduleJar.resolveSibling(LOCALE_DIR_NAME);
+        if (!Files.isDirectory(localeDir)) {
+            return;
+        }
+        try (DirectoryStream<Path> jars = Files.newDirectoryStream(localeDir, jarBaseName(moduleJar) + "_*.jar")) {
+            for (Path jar : jars) {
+                Files.delete(jar);
+            }
+        }
+    }
+}
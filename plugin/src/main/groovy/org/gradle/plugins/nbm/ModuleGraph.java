@@ -0,0 +1,234 @@
+package org.gradle.plugins.nbm;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * Dependency graph of NetBeans modules built from their manifests and module status files.
+ */
+final class ModuleGraph {
+    private static final Pattern DEPENDENCY_NAME_END = Pattern.compile("[\\s>=/]");
+
+    enum Kind {
+        REGULAR, AUTOLOAD, EAGER, DISABLED
+    }
+
+    static final class Module {
+        private final String codeNameBase;
+        private final Kind kind;
+        private final List<String> dependencies;
+
+        Module(String codeNameBase, Kind kind, List<String> dependencies) {
+            this.codeNameBase = Objects.requireNonNull(codeNameBase, "codeNameBase");
+            this.kind = Objects.requireNonNull(kind, "kind");
+            this.dependencies = Collections.unmodifiableList(new ArrayList<>(dependencies));
+        }
+
+        String getCodeNameBase() {
+            return codeNameBase;
+        }
+
+        Kind getKind() {
+            return kind;
+        }
+
+        List<String> getDependencies() {
+            return dependencies;
+        }
+    }
+
+    private final Map<String, Module> modules = new TreeMap<>();
+
+    void add(Module module) {
+        modules.put(module.getCodeNameBase(), module);
+    }
+
+    Map<String, Module> getModules() {
+        return Collections.unmodifiableMap(modules);
+    }
+
+    /**
+     * Parses the code name bases out of {@code OpenIDE-Module-Module-Dependencies}.
+     */
+    static List<String> parseDependencies(String moduleDependencies) {
+        List<String> result = new ArrayList<>();
+        if (moduleDependencies == null) {
+            return result;
+        }
+        for (String dependency : moduleDependencies.split(",")) {
+            String trimmed = dependency.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            String name = DEPENDENCY_NAME_END.split(trimmed, 2)[0];
+            if (!name.isEmpty()) {
+                result.add(name);
+            }
+        }
+        return result;
+    }
+
+    static String codeNameBase(String codeName) {
+        int slash = codeName.indexOf('/');
+        return (slash >= 0 ? codeName.substring(0, slash) : codeName).trim();
+    }
+
+    /**
+     * Dependencies which are not modules of this graph.
+     */
+    Set<String> getExternalDependencies(String codeNameBase) {
+        Set<String> result = new TreeSet<>();
+        for (String dependency : modules.get(codeNameBase).getDependencies()) {
+            if (!modules.containsKey(dependency)) {
+                result.add(dependency);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Modules which depend on the given module.
+     */
+    Set<String> getDependents(String codeNameBase) {
+        Set<String> result = new TreeSet<>();
+        for (Module module : modules.values()) {
+            if (module.getDependencies().contains(codeNameBase)) {
+                result.add(module.getCodeNameBase());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Dependency cycles, each one as the set of modules of a strongly connected component.
+     */
+    List<Set<String>> findCycles() {
+        return new CycleFinder().find();
+    }
+
+    /**
+     * Modules of this graph enabled together with the given module (including itself).
+     */
+    Set<String> getEnablementClosure(String codeNameBase) {
+        return closure(Collections.singleton(codeNameBase));
+    }
+
+    /**
+     * Modules of this graph enabled at startup: regular and eager modules with their dependencies.
+     */
+    Set<String> getStartupSet() {
+        return closure(startupRoots(null));
+    }
+
+    /**
+     * Regular modules which are required by other modules of the graph and would no longer be enabled
+     * at startup as autoload. The value is the non-empty set of modules which would no longer be enabled
+     * at startup if the module was autoload.
+     */
+    Map<String, Set<String>> getAutoloadCandidates() {
+        Set<String> startupSet = getStartupSet();
+        Map<String, Set<String>> result = new TreeMap<>();
+        for (Module module : modules.values()) {
+            if (module.getKind() != Kind.REGULAR || getDependents(module.getCodeNameBase()).isEmpty()) {
+                continue;
+            }
+            Set<String> reduced = closure(startupRoots(module.getCodeNameBase()));
+            Set<String> savings = new TreeSet<>(startupSet);
+            savings.removeAll(reduced);
+            if (!savings.isEmpty()) {
+                result.put(module.getCodeNameBase(), savings);
+            }
+        }
+        return result;
+    }
+
+    private Set<String> startupRoots(String excluded) {
+        Set<String> roots = new LinkedHashSet<>();
+        for (Module module : modules.values()) {
+            boolean root = module.getKind() == Kind.REGULAR || module.getKind() == Kind.EAGER;
+            if (root && !module.getCodeNameBase().equals(excluded)) {
+                roots.add(module.getCodeNameBase());
+            }
+        }
+        return roots;
+    }
+
+    private Set<String> closure(Set<String> roots) {
+        Set<String> result = new TreeSet<>();
+        Deque<String> queue = new ArrayDeque<>(roots);
+        while (!queue.isEmpty()) {
+            String name = queue.poll();
+            Module module = modules.get(name);
+            if (module == null || !result.add(name)) {
+                continue;
+            }
+            queue.addAll(module.getDependencies());
+        }
+        return result;
+    }
+
+    /**
+     * Tarjan's strongly connected components restricted to the modules of the graph.
+     */
+    private final class CycleFinder {
+        private final Map<String, Integer> index = new HashMap<>();
+        private final Map<String, Integer> lowLink = new HashMap<>();
+        private final Deque<String> stack = new ArrayDeque<>();
+        private final Set<String> onStack = new LinkedHashSet<>();
+        private final List<Set<String>> cycles = new ArrayList<>();
+
+        List<Set<String>> find() {
+            for (String name : modules.keySet()) {
+                if (!index.containsKey(name)) {
+                    visit(name);
+                }
+            }
+            return cycles;
+        }
+
+        private void visit(String name) {
+            index.put(name, index.size());
+            lowLink.put(name, index.get(name));
+            stack.push(name);
+            onStack.add(name);
+
+            List<String> dependencies = modules.get(name).getDependencies();
+            for (String dependency : dependencies) {
+                if (!modules.containsKey(dependency)) {
+                    continue;
+                }
+                if (!index.containsKey(dependency)) {
+                    visit(dependency);
+                    lowLink.put(name, Math.min(lowLink.get(name), lowLink.get(dependency)));
+                } else if (onStack.contains(dependency)) {
+                    lowLink.put(name, Math.min(lowLink.get(name), index.get(dependency)));
+                }
+            }
+
+            if (lowLink.get(name).equals(index.get(name))) {
+                Set<String> component = new TreeSet<>();
+                String member;
+                do {
+                    member = stack.pop();
+                    onStack.remove(member);
+                    component.add(member);
+                } while (!member.equals(name));
+
+                if (component.size() > 1 || dependencies.contains(name)) {
+                    cycles.add(component);
+                }
+            }
+        }
+    }
+}
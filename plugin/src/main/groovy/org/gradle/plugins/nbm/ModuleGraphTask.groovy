@@ -0,0 +1,155 @@
+package org.gradle.plugins.nbm
+
+import groovy.json.JsonOutput
+import groovy.xml.XmlSlurper
+import org.gradle.api.DefaultTask
+import org.gradle.api.file.ConfigurableFileCollection
+import org.gradle.api.file.RegularFileProperty
+import org.gradle.api.tasks.InputFiles
+import org.gradle.api.tasks.OutputFile
+import org.gradle.api.tasks.PathSensitive
+import org.gradle.api.tasks.PathSensitivity
+import org.gradle.api.tasks.TaskAction
+
+import java.util.jar.Attributes
+import java.util.jar.Manifest
+
+/**
+ * Builds the dependency graph of all modules of the build from their generated manifests and
+ * module status files. Reports dependency cycles, the modules enabled together with each regular
+ * or eager module, and the regular modules which could be autoload to shrink the set of modules
+ * enabled at startup.
+ */
+abstract class ModuleGraphTask extends DefaultTask {
+
+    @InputFiles
+    @PathSensitive(PathSensitivity.NONE)
+    abstract ConfigurableFileCollection getManifestFiles()
+
+    /**
+     * Module status files ({@code config/Modules/*.xml}) of the modules, or directories containing them.
+     */
+    @InputFiles
+    @PathSensitive(PathSensitivity.NAME_ONLY)
+    abstract ConfigurableFileCollection getModuleStatusFiles()
+
+    @OutputFile
+    abstract RegularFileProperty getJsonReport()
+
+    @OutputFile
+    abstract RegularFileProperty getDotReport()
+
+    @TaskAction
+    void analyze() {
+        ModuleGraph graph = buildGraph()
+
+        List<Set<String>> cycles = graph.findCycles()
+        cycles.each {
+            logger.warn "Dependency cycle between modules ${it.join(', ')}, NetBeans will not enable them"
+        }
+        Map<String, Set<String>> autoloadCandidates = graph.autoloadCandidates
+        Set<String> startupSet = graph.startupSet
+
+        def json = jsonReport.get().asFile
+        json.parentFile.mkdirs()
+        json.setText(JsonOutput.prettyPrint(JsonOutput.toJson(toReport(graph, cycles, autoloadCandidates, startupSet))), 'UTF-8')
+
+        def dot = dotReport.get().asFile
+        dot.parentFile.mkdirs()
+        dot.setText(toDot(graph, cycles), 'UTF-8')
+
+        logger.lifecycle "${graph.modules.size()} modules, ${startupSet.size()} enabled at startup, " +
+            "${cycles.size()} dependency cycles, ${autoloadCandidates.size()} autoload candidates, see $json"
+    }
+
+    private ModuleGraph buildGraph() {
+        Map<String, ModuleGraph.Kind> kinds = [:]
+        moduleStatusFiles.asFileTree.files.findAll { it.name.endsWith('.xml') }.each { File file ->
+            def module = parseModuleStatus(file)
+            def params = module.param.collectEntries { [(it.@name.text()): it.text().trim()] }
+            ModuleGraph.Kind kind = ModuleGraph.Kind.REGULAR
+            if (params.autoload == 'true') {
+                kind = ModuleGraph.Kind.AUTOLOAD
+            } else if (params.eager == 'true') {
+                kind = ModuleGraph.Kind.EAGER
+            } else if (params.enabled == 'false') {
+                kind = ModuleGraph.Kind.DISABLED
+            }
+            kinds.put(ModuleGraph.codeNameBase(module.@name.text()), kind)
+        }
+
+        ModuleGraph graph = new ModuleGraph()
+        manifestFiles.files.each { File file ->
+            Attributes attributes = file.withInputStream { new Manifest(it).mainAttributes }
+            String codeName = attributes.getValue('OpenIDE-Module')
+            if (codeName == null) {
+                logger.info "Skipping $file, it is not a NetBeans module manifest"
+                return
+            }
+            String codeNameBase = ModuleGraph.codeNameBase(codeName)
+            graph.add(new ModuleGraph.Module(
+                codeNameBase,
+                kinds.getOrDefault(codeNameBase, ModuleGraph.Kind.REGULAR),
+                ModuleGraph.parseDependencies(attributes.getValue('OpenIDE-Module-Module-Dependencies'))))
+        }
+        return graph
+    }
+
+    private static parseModuleStatus(File file) {
+        def slurper = new XmlSlurper(false, false, true)
+        // module status files reference the DTD on netbeans.org
+        slurper.setFeature('http://apache.org/xml/features/nonvalidating/load-external-dtd', false)
+        return slurper.parse(file)
+    }
+
+    private static Map<String, Object> toReport(ModuleGraph graph, List<Set<String>> cycles,
+                                                Map<String, Set<String>> autoloadCandidates, Set<String> startupSet) {
+        def modules = graph.modules.values().collect { ModuleGraph.Module module ->
+            String name = module.codeNameBase
+            Map<String, Object> entry = [
+                name                : name,
+                kind                : module.kind.name().toLowerCase(Locale.ROOT),
+                enabledAtStartup    : startupSet.contains(name),
+                dependencies        : module.dependencies.findAll { graph.modules.containsKey(it) }.sort(),
+                externalDependencies: graph.getExternalDependencies(name),
+                dependents          : graph.getDependents(name),
+            ]
+            if (module.kind == ModuleGraph.Kind.REGULAR || module.kind == ModuleGraph.Kind.EAGER) {
+                entry.enablementClosure = graph.getEnablementClosure(name)
+            }
+            return entry
+        }
+        return [
+            moduleCount       : graph.modules.size(),
+            startupModuleCount: startupSet.size(),
+            cycles            : cycles,
+            autoloadCandidates: autoloadCandidates.collect { name, savings ->
+                [name: name, dependents: graph.getDependents(name), notEnabledAtStartup: savings]
+            }.sort { -it.notEnabledAtStartup.size() },
+            modules           : modules,
+        ]
+    }
+
+    private static String toDot(ModuleGraph graph, List<Set<String>> cycles) {
+        Map<String, Integer> cycleIndex = [:]
+        cycles.eachWithIndex { Set<String> cycle, int index -> cycle.each { cycleIndex.put(it, index) } }
+        def dot = new StringBuilder('digraph modules {\n    node [shape=box];\n')
+        graph.modules.values().each { ModuleGraph.Module module ->
+            String style = [
+                (ModuleGraph.Kind.REGULAR) : '',
+                (ModuleGraph.Kind.AUTOLOAD): ', style=dashed',
+                (ModuleGraph.Kind.EAGER)   : ', style=bold',
+                (ModuleGraph.Kind.DISABLED): ', style=dotted',
+            ][module.kind]
+            dot.append("    \"${module.codeNameBase}\" [label=\"${module.codeNameBase}\\n${module.kind.name().toLowerCase(Locale.ROOT)}\"$style];\n")
+        }
+        graph.modules.values().each { ModuleGraph.Module module ->
+            module.dependencies.findAll { graph.modules.containsKey(it) }.each { String dependency ->
+                String color = cycleIndex.containsKey(dependency) && cycleIndex[module.codeNameBase] == cycleIndex[dependency] ? ' [color=red]' : ''
+                dot.append("    \"${module.codeNameBase}\" -> \"${dependency}\"$color;\n")
+            }
+        }
+        dot.append('}\n')
+        return dot.toString()
+    }
+}
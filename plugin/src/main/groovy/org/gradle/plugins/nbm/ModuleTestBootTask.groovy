@@ -0,0 +1,50 @@
+package org.gradle.plugins.nbm
+
+import org.gradle.api.DefaultTask
+import org.gradle.api.file.DirectoryProperty
+import org.gradle.api.tasks.OutputDirectory
+import org.gradle.api.tasks.TaskAction
+
+/**
+ * Generates a JUnit Jupiter extension booting the NetBeans module system before the first test class
+ * of a worker, registered for automatic detection. It is compiled with the {@code moduleTest} source set,
+ * so that tests do not have to boot the module system themselves.
+ */
+abstract class ModuleTestBootTask extends DefaultTask {
+    static final String EXTENSION_CLASS_NAME = 'org.gradle.plugins.nbm.moduletest.ModuleSystemBoot'
+
+    // the module system is on the classpath of the tests only at runtime
+    private static final String EXTENSION_SOURCE = '''\
+package org.gradle.plugins.nbm.moduletest;
+
+import org.junit.jupiter.api.extension.BeforeAllCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+/**
+ * Boots the NetBeans module system, generated by the NBM plugin.
+ */
+public final class ModuleSystemBoot implements BeforeAllCallback {
+    @Override
+    public void beforeAll(ExtensionContext context) throws Exception {
+        Class.forName("org.netbeans.core.startup.Main").getMethod("getModuleSystem").invoke(null);
+    }
+}
+'''
+
+    @OutputDirectory
+    abstract DirectoryProperty getSourceDir()
+
+    @OutputDirectory
+    abstract DirectoryProperty getResourceDir()
+
+    @TaskAction
+    void generate() {
+        File source = sourceDir.file(EXTENSION_CLASS_NAME.replace('.', '/') + '.java').get().asFile
+        source.parentFile.mkdirs()
+        source.setText(EXTENSION_SOURCE, 'UTF-8')
+
+        File services = resourceDir.file('META-INF/services/org.junit.jupiter.api.extension.Extension').get().asFile
+        services.parentFile.mkdirs()
+        services.setText(EXTENSION_CLASS_NAME + '\n', 'UTF-8')
+    }
+}
@@ -0,0 +1,84 @@
+package org.gradle.plugins.nbm
+
+import org.gradle.api.file.DirectoryProperty
+import org.gradle.api.provider.Property
+import org.gradle.api.tasks.Input
+import org.gradle.api.tasks.InputFiles
+import org.gradle.api.tasks.InputDirectory
+import org.gradle.api.tasks.Optional
+import org.gradle.api.tasks.PathSensitive
+import org.gradle.api.tasks.PathSensitivity
+import org.gradle.api.tasks.testing.Test
+import org.gradle.process.CommandLineArgumentProvider
+
+/**
+ * Runs JUnit Platform tests in headless JVMs set up to boot the NetBeans module system
+ * from a locally provided platform and the module cluster of this project.
+ * <p>
+ * The module system is booted before the first JUnit Jupiter test class by the extension of
+ * {@link ModuleTestBootTask}, and is kept for all test classes executed by the same worker JVM.
+ * Test classes are distributed among {@code maxParallelForks} workers.
+ * <p>
+ * Only the test classes, the test-only dependencies and the boot JARs of the platform are on
+ * the application classpath, the module itself is loaded by the module system from its
+ * cluster. The module classes are therefore not on the compile classpath of the tests either,
+ * tests reach them through the module system, for example
+ * {@code Lookup.getDefault().lookup(ClassLoader).loadClass(name)}.
+ */
+abstract class ModuleTestTask extends Test {
+    public static final String IN_MEMORY_USER_DIR = 'memory'
+
+    ModuleTestTask() {
+        forkEvery = 0
+        moduleSystemUserDir.convention(IN_MEMORY_USER_DIR)
+        useJUnitPlatform()
+        systemProperty 'java.awt.headless', 'true'
+        systemProperty 'junit.jupiter.extensions.autodetection.enabled', 'true'
+        jvmArgumentProviders.add({ moduleSystemArguments() } as CommandLineArgumentProvider)
+        doFirst {
+            if (!platformDir.isPresent()) {
+                throw new IllegalStateException('The NetBeans platform directory is not specified, ' +
+                    'set nbm.platformDir or the netBeansPlatformDir property')
+            }
+        }
+    }
+
+    /**
+     * The module cluster created by the {@code netbeans} task.
+     */
+    @InputFiles
+    @PathSensitive(PathSensitivity.RELATIVE)
+    abstract DirectoryProperty getModuleBuildDir()
+
+    /**
+     * NetBeans platform (or IDE) installation providing the other clusters.
+     */
+    @InputDirectory
+    @Optional
+    @PathSensitive(PathSensitivity.RELATIVE)
+    abstract DirectoryProperty getPlatformDir()
+
+    /**
+     * User directory of the booted module system, {@code memory} keeps it in memory
+     * so that parallel workers do not share any state on disk.
+     */
+    @Input
+    abstract Property<String> getModuleSystemUserDir()
+
+    protected List<String> moduleSystemArguments() {
+        File platform = platformDir.getOrNull()?.asFile
+        if (platform == null) {
+            return []
+        }
+
+        File home = NetBeansLaunchUtils.findHomeCluster(platform)
+        List<File> clusters = NetBeansLaunchUtils.findClusters(platform) - home
+        clusters.add(moduleBuildDir.get().asFile)
+
+        return [
+            "-Dnetbeans.home=${home}",
+            "-Dnetbeans.dirs=${clusters.join(File.pathSeparator)}",
+            "-Dnetbeans.user=${moduleSystemUserDir.get()}",
+        ]*.toString()
+    }
+}
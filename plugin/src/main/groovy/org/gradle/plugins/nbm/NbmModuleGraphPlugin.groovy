@@ -0,0 +1,58 @@
+package org.gradle.plugins.nbm
+
+import org.gradle.api.Plugin
+import org.gradle.api.Project
+import org.gradle.api.artifacts.Configuration
+import org.gradle.api.attributes.Category
+import org.gradle.api.attributes.Usage
+
+import static org.gradle.plugins.nbm.NbmPlugin.MODULE_GRAPH_TASK
+import static org.gradle.plugins.nbm.NbmPlugin.NBM_MODULE_CATEGORY
+import static org.gradle.plugins.nbm.NbmPlugin.NBM_MODULE_MANIFEST_USAGE
+import static org.gradle.plugins.nbm.NbmPlugin.NBM_MODULE_STATUS_USAGE
+
+/**
+ * Registers the {@code nbmModuleGraph} task analysing the modules of this project and all its
+ * subprojects, usually applied to the root project.
+ * <p>
+ * The modules are resolved from the {@code nbmModuleManifestElements} and {@code nbmModuleStatusElements}
+ * variants of the projects applying {@link NbmPlugin}, other projects are skipped. No project configures
+ * another one, so the plugin works with isolated projects.
+ */
+public class NbmModuleGraphPlugin implements Plugin<Project> {
+    public static final String MODULE_MANIFESTS_CONFIGURATION_NAME = 'nbmModuleManifests'
+    public static final String MODULE_STATUSES_CONFIGURATION_NAME = 'nbmModuleStatuses'
+
+    void apply(Project project) {
+        Configuration manifests = createModulesConfiguration(project, MODULE_MANIFESTS_CONFIGURATION_NAME,
+            NBM_MODULE_MANIFEST_USAGE, "Generated manifests of the NetBeans modules of the build.")
+        Configuration statuses = createModulesConfiguration(project, MODULE_STATUSES_CONFIGURATION_NAME,
+            NBM_MODULE_STATUS_USAGE, "config/Modules directories of the NetBeans modules of the build.")
+
+        project.tasks.register(MODULE_GRAPH_TASK, ModuleGraphTask) {
+            setDescription "Reports the dependency graph, startup enablement and autoload candidates of all NetBeans modules of the build."
+            manifestFiles.from(manifests.incoming.artifactView { lenient = true }.files)
+            moduleStatusFiles.from(statuses.incoming.artifactView { lenient = true }.files)
+            jsonReport = project.layout.buildDirectory.file('reports/nbm/module-graph.json')
+            dotReport = project.layout.buildDirectory.file('reports/nbm/module-graph.dot')
+        }
+    }
+
+    // projects without a matching variant are not NetBeans modules and fail leniently
+    private static Configuration createModulesConfiguration(Project project, String name, String usage, String description) {
+        Configuration configuration = project.configurations.create(name).tap {
+            visible = false
+            it.description = description
+            canBeConsumed = false
+            canBeResolved = true
+            attributes {
+                attribute(Usage.USAGE_ATTRIBUTE, project.objects.named(Usage, usage))
+                attribute(Category.CATEGORY_ATTRIBUTE, project.objects.named(Category, NBM_MODULE_CATEGORY))
+            }
+        }
+        project.allprojects.each { Project module ->
+            project.dependencies.add(name, project.dependencies.project(path: module.path))
+        }
+        return configuration
+    }
+}
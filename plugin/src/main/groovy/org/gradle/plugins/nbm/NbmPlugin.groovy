@@ -2,6 +2,7 @@ package org.gradle.plugins.nbm
 
 import org.gradle.api.Plugin
 import org.gradle.api.Project
+import org.gradle.api.attributes.Attribute
 
 public class NbmPlugin implements Plugin<Project> {
     public static final String PROVIDED_COMPILE_CONFIGURATION_NAME = "providedCompile";
@@ -10,13 +11,43 @@ public class NbmPlugin implements Plugin<Project> {
     public static final String BUNDLE_CONFIGURATION_NAME = "bundle";
     public static final String API_ELEMENTS_CONFIGURATION_NAME = "nbApiElements"
     public static final String RUNTIME_ELEMENTS_CONFIGURATION_NAME = "nbRuntimeElements"
+    public static final String MODULE_MANIFEST_ELEMENTS_CONFIGURATION_NAME = "nbmModuleManifestElements"
+    public static final String MODULE_STATUS_ELEMENTS_CONFIGURATION_NAME = "nbmModuleStatusElements"
+    public static final String MODULE_TEST_SOURCE_SET_NAME = "moduleTest"
 
     public static final String NBM_TASK = 'nbm'
     public static final String NETBEANS_TASK = 'netbeans'
     public static final String MANIFEST_TASK = 'generateModuleManifest'
+    public static final String CDS_ARCHIVE_TASK = 'generateCdsArchive'
+    public static final String CDS_ARCHIVE_ZIP_TASK = 'cdsArchiveZip'
+    public static final String MODULE_TEST_TASK = 'moduleTest'
+    public static final String MODULE_TEST_BOOT_TASK = 'generateModuleTestBoot'
+    public static final String STARTUP_ORDER_TASK = 'recordStartupOrder'
+    public static final String HOT_RELOAD_TASK = 'runHot'
+    public static final String API_JAR_TASK = 'apiJar'
+    public static final String MODULE_GRAPH_TASK = 'nbmModuleGraph'
+    public static final String SMOKE_TEST_TASK = 'smokeTest'
+    public static final String BENCHMARK_STARTUP_TASK = 'benchmarkStartup'
 
     public static final String NBM_ARTIFACT_TYPE = 'nbm'
     public static final String NBM_LIBRARY_ELEMENTS = 'nbm'
+    /**
+     * Distinguishes the API JAR of {@code nbApiElements} from the {@code apiElements} of the java plugin,
+     * requested by the compile classpath of NBM projects.
+     */
+    public static final Attribute<String> NBM_API_ATTRIBUTE = Attribute.of('org.gradle.plugins.nbm.api', String)
+    public static final String NBM_API_PUBLIC_PACKAGES = 'public-packages'
+    /**
+     * Requested by the dependencies of {@code nbimplementation}, which need the non-public packages as well.
+     */
+    public static final String NBM_API_IMPLEMENTATION = 'implementation'
+    /**
+     * Category and usages of the generated manifest and the {@code config/Modules} directory of the module,
+     * resolved by {@link NbmModuleGraphPlugin}.
+     */
+    public static final String NBM_MODULE_CATEGORY = 'nbm-module'
+    public static final String NBM_MODULE_MANIFEST_USAGE = 'nbm-module-manifest'
+    public static final String NBM_MODULE_STATUS_USAGE = 'nbm-module-status'
 
     void apply(Project project) {
         project.apply plugin: 'java';
@@ -19,6 +19,7 @@ import java.time.Clock;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
@@ -64,6 +65,14 @@ public class NbmPluginExtension {
     private final DirectoryProperty nbmModuleBuildDir;
     private final RegularFileProperty generatedManifestFile;
 
+    private final Property<Boolean> useCdsArchive;
+    private final RegularFileProperty cdsArchiveFile;
+    private final ListProperty<String> trainingArguments;
+    private final DirectoryProperty platformDir;
+    private final Property<Boolean> optimizeJarLayout;
+    private final RegularFileProperty startupOrderFile;
+    private final Property<Boolean> splitLocaleJars;
+
     private final Clock clock;
     private Instant buildTimestamp;
 
@@ -124,6 +133,20 @@ public class NbmPluginExtension {
         this.generatedManifestFile = objects.fileProperty()
             .convention(project.getLayout().getBuildDirectory().file("generated-manifest.mf"));
 
+        this.useCdsArchive = objects.property(Boolean.class).convention(false);
+        this.cdsArchiveFile = objects.fileProperty()
+            .convention(project.getLayout().getBuildDirectory().file("cds/netbeans.jsa"));
+        // Boots the module system, lists the modules and exits without opening the main window
+        this.trainingArguments = objects.listProperty(String.class)
+            .convention(Arrays.asList("--nogui", "--modules", "--list"));
+        this.platformDir = objects.directoryProperty()
+            .convention(project.getLayout().getProjectDirectory().dir(providers.gradleProperty("netBeansPlatformDir")));
+
+        this.optimizeJarLayout = objects.property(Boolean.class).convention(false);
+        this.startupOrderFile = objects.fileProperty()
+            .convention(project.getLayout().getProjectDirectory().file("src/main/nbm/startup-order.txt"));
+        this.splitLocaleJars = objects.property(Boolean.class).convention(false);
+
         requires("org.openide.modules.ModuleFormat1");
     }
 
@@ -506,6 +529,104 @@ public class NbmPluginExtension {
         generatedManifestFile.set(file);
     }
 
+    public Provider<Boolean> getUseCdsArchive() {
+        return useCdsArchive;
+    }
+
+    public void setUseCdsArchive(boolean useCdsArchive) {
+        this.useCdsArchive.set(useCdsArchive);
+    }
+
+    public void setUseCdsArchive(Provider<? extends Boolean> useCdsArchiveProvider) {
+        this.useCdsArchive.set(useCdsArchiveProvider);
+    }
+
+    public Provider<RegularFile> getCdsArchiveFile() {
+        return cdsArchiveFile;
+    }
+
+    public void setCdsArchiveFile(File file) {
+        cdsArchiveFile.set(file);
+    }
+
+    public void setCdsArchiveFile(RegularFile file) {
+        cdsArchiveFile.set(file);
+    }
+
+    public void setCdsArchiveFile(Provider<? extends RegularFile> file) {
+        cdsArchiveFile.set(file);
+    }
+
+    public Provider<List<String>> getTrainingArguments() {
+        return trainingArguments;
+    }
+
+    public void setTrainingArguments(List<String> trainingArguments) {
+        Objects.requireNonNull(trainingArguments, "trainingArguments");
+        this.trainingArguments.set(trainingArguments);
+    }
+
+    public void setTrainingArguments(Provider<? extends List<String>> trainingArguments) {
+        Objects.requireNonNull(trainingArguments, "trainingArguments");
+        this.trainingArguments.set(trainingArguments);
+    }
+
+    public Provider<Directory> getPlatformDir() {
+        return platformDir;
+    }
+
+    public void setPlatformDir(File directory) {
+        platformDir.set(directory);
+    }
+
+    public void setPlatformDir(Directory directory) {
+        platformDir.set(directory);
+    }
+
+    public void setPlatformDir(Provider<? extends Directory> directoryProvider) {
+        platformDir.set(directoryProvider);
+    }
+
+    public Provider<Boolean> getOptimizeJarLayout() {
+        return optimizeJarLayout;
+    }
+
+    public void setOptimizeJarLayout(boolean optimizeJarLayout) {
+        this.optimizeJarLayout.set(optimizeJarLayout);
+    }
+
+    public void setOptimizeJarLayout(Provider<? extends Boolean> optimizeJarLayoutProvider) {
+        this.optimizeJarLayout.set(optimizeJarLayoutProvider);
+    }
+
+    public Provider<RegularFile> getStartupOrderFile() {
+        return startupOrderFile;
+    }
+
+    public void setStartupOrderFile(File file) {
+        startupOrderFile.set(file);
+    }
+
+    public void setStartupOrderFile(RegularFile file) {
+        startupOrderFile.set(file);
+    }
+
+    public void setStartupOrderFile(Provider<? extends RegularFile> file) {
+        startupOrderFile.set(file);
+    }
+
+    public Provider<Boolean> getSplitLocaleJars() {
+        return splitLocaleJars;
+    }
+
+    public void setSplitLocaleJars(boolean splitLocaleJars) {
+        this.splitLocaleJars.set(splitLocaleJars);
+    }
+
+    public void setSplitLocaleJars(Provider<? extends Boolean> splitLocaleJarsProvider) {
+        this.splitLocaleJars.set(splitLocaleJarsProvider);
+    }
+
     private synchronized Instant getBuildTimestamp() {
         if (buildTimestamp == null) {
             buildTimestamp = clock.instant();
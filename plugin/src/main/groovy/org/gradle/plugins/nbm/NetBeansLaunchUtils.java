@@ -0,0 +1,277 @@
+package org.gradle.plugins.nbm;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+final class NetBeansLaunchUtils {
+    static final String NETBEANS_EXECUTABLE_PROPERTY = "netBeansExecutable";
+
+    /**
+     * Makes NetBeans print its startup log ({@code @<ms> - <message>} lines) to the standard error.
+     */
+    static final String STARTUP_LOG_ARGUMENT = "-J-Dorg.netbeans.log.startup=print";
+
+    /**
+     * Startup log message printed once all modules are enabled.
+     */
+    static final String MODULES_INITIALIZED = "Modules initialized";
+
+    private static final Pattern JDK_HOME_SETTING = Pattern.compile("^\\s*netbeans_jdkhome\\s*=\\s*\"?([^\"]*)\"?\\s*$");
+    private static final Pattern STARTUP_LOG_LINE = Pattern.compile("^@(\\d+)(?:ms)?\\s+-\\s+(.+)$");
+    private static final Pattern LOG_RECORD_LINE = Pattern.compile("^(SEVERE|WARNING|INFO|CONFIG|FINE|FINER|FINEST)\\b");
+    private static final Pattern EXCEPTION_LINE = Pattern.compile(
+        "^(?:Caused(?: by)?: )?(?:[a-z_$][\\w$]*\\.)+[A-Z][\\w$]*(?:Exception|Error)\\b");
+    private static final Pattern HEAP_USAGE = Pattern.compile("(?:total|committed) \\d+K, used (\\d+)K");
+
+    /**
+     * Writes {@code etc/netbeans.conf} into the user directory so that the launched
+     * IDE picks up the given clusters in addition to its own.
+     */
+    static void writeExtraClustersConf(Path userDir, Path... clusters) throws IOException {
+        Path confFile = userDir.resolve("etc").resolve("netbeans.conf");
+        Files.createDirectories(confFile.getParent());
+        String extraClusters = Stream.of(clusters)
+            .map(Path::toString)
+            .collect(Collectors.joining(File.pathSeparator));
+        Files.write(confFile, ("netbeans_extraclusters=\"" + extraClusters + "\"")
+            .getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses the startup log printed with {@link #STARTUP_LOG_ARGUMENT}.
+     *
+     * @return milliseconds since the launch of the first occurrence of each message, in log order
+     */
+    static Map<String, Long> parseStartupLog(List<String> lines) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (String line : lines) {
+            Matcher matcher = STARTUP_LOG_LINE.matcher(line.trim());
+            if (matcher.matches()) {
+                result.putIfAbsent(matcher.group(2).trim(), Long.parseLong(matcher.group(1)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Severe and warning log records with their stack traces, and modules which could not be enabled, from
+     * {@code var/log/messages.log} of a user directory. Exceptions of other records, for example the
+     * informational ones of the offline update check, are no boot errors.
+     */
+    static List<String> findBootErrors(List<String> messagesLog) {
+        List<String> result = new ArrayList<>();
+        boolean inErrorRecord = false;
+        for (String line : messagesLog) {
+            String trimmed = line.trim();
+            Matcher record = LOG_RECORD_LINE.matcher(trimmed);
+            boolean recordStart = record.find();
+            if (recordStart) {
+                inErrorRecord = record.group(1).equals("SEVERE") || record.group(1).equals("WARNING");
+            }
+            if (inErrorRecord && (recordStart || EXCEPTION_LINE.matcher(trimmed).find())
+                || trimmed.toLowerCase(Locale.ROOT).contains("could not install")) {
+                result.add(trimmed);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Heap in use at JVM exit as logged by {@code -Xlog:gc+heap+exit}, summed over all generations.
+     *
+     * @return used heap in KiB or {@code null} if the log does not contain the heap summary
+     */
+    static Long parseHeapUsedKb(List<String> gcLog) {
+        Long result = null;
+        for (String line : gcLog) {
+            if (!line.contains("gc,heap,exit")) {
+                continue;
+            }
+            Matcher matcher = HEAP_USAGE.matcher(line);
+            if (matcher.find()) {
+                result = (result == null ? 0L : result) + Long.parseLong(matcher.group(1));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Whether the JDK supports {@code -Xlog}, that is it is not JDK 8 or older.
+     */
+    static boolean supportsUnifiedLogging(Path javaHome) throws IOException {
+        Path release = javaHome.resolve("release");
+        if (!Files.isRegularFile(release)) {
+            return true;
+        }
+        for (String line : Files.readAllLines(release, StandardCharsets.UTF_8)) {
+            if (line.startsWith("JAVA_VERSION=")) {
+                return !line.substring("JAVA_VERSION=".length()).replace("\"", "").startsWith("1.");
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The cluster containing the boot JARs of a platform: its {@code platform} cluster, or the directory
+     * itself if it is a single cluster.
+     */
+    static File findHomeCluster(File platformDir) {
+        File platformCluster = new File(platformDir, "platform");
+        return platformCluster.isDirectory() ? platformCluster : platformDir;
+    }
+
+    /**
+     * The clusters of a platform, sorted by name.
+     */
+    static List<File> findClusters(File platformDir) {
+        File[] children = platformDir.listFiles();
+        if (children == null) {
+            return new ArrayList<>();
+        }
+        return Stream.of(children)
+            .filter(dir -> dir.isDirectory()
+                && (new File(dir, "update_tracking").isDirectory() || new File(dir, "config/Modules").isDirectory()))
+            .sorted(Comparator.comparing(File::getName))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * The {@code etc/netbeans.conf} of the installation of the given launcher.
+     *
+     * @return the configuration file, which does not have to exist, or {@code null} if the launcher is not in a {@code bin} directory
+     */
+    static Path launcherConfFile(String executable) {
+        Path bin = Paths.get(executable).toAbsolutePath().getParent();
+        return bin != null && bin.getParent() != null
+            ? bin.getParent().resolve("etc").resolve("netbeans.conf")
+            : null;
+    }
+
+    /**
+     * The JDK the NetBeans launcher runs on: {@code netbeans_jdkhome} of the {@link #launcherConfFile launcher configuration},
+     * or {@code JAVA_HOME} when the configuration does not set it.
+     *
+     * @param conf content of the launcher configuration, {@code null} if there is none
+     * @return the JDK home or {@code null} if the launcher would look up {@code java} on the path
+     */
+    static String findLauncherJdkHome(String conf, String javaHomeVariable) {
+        if (conf != null) {
+            for (String line : conf.split("\\r?\\n")) {
+                Matcher matcher = JDK_HOME_SETTING.matcher(line);
+                if (matcher.matches() && !matcher.group(1).trim().isEmpty()) {
+                    return matcher.group(1).trim();
+                }
+            }
+        }
+        return javaHomeVariable == null || javaHomeVariable.trim().isEmpty() ? null : javaHomeVariable.trim();
+    }
+
+    /**
+     * Kills the process together with all its descendants. The NetBeans launchers run {@code java} as
+     * a child process, so killing only the launcher leaves the JVM running.
+     * <p>
+     * On Java 9 and later the descendants are found with {@code ProcessHandle}. On Java 8 they are
+     * found with {@code pgrep} on Unix, on Windows only the launcher itself is killed there.
+     */
+    static void destroyProcessTree(Process process) throws IOException, InterruptedException {
+        List<Object> descendants = new ArrayList<>();
+        Method destroyDescendant = null;
+        try {
+            Class<?> processHandle = Class.forName("java.lang.ProcessHandle");
+            Object handle = Process.class.getMethod("toHandle").invoke(process);
+            try (Stream<?> stream = (Stream<?>) processHandle.getMethod("descendants").invoke(handle)) {
+                stream.forEach(descendants::add);
+            }
+            destroyDescendant = processHandle.getMethod("destroyForcibly");
+        } catch (ClassNotFoundException ex) {
+            Integer pid = unixProcessId(process);
+            if (pid != null) {
+                try {
+                    descendants.addAll(findDescendantsWithPgrep(pid));
+                } catch (IOException noPgrep) {
+                    // only the launcher is killed
+                }
+            }
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Cannot list the child processes of " + process, ex);
+        }
+
+        // the launcher first so that it cannot start new processes
+        process.destroyForcibly().waitFor();
+        if (destroyDescendant != null) {
+            for (Object descendant : descendants) {
+                try {
+                    destroyDescendant.invoke(descendant);
+                } catch (ReflectiveOperationException ex) {
+                    throw new IllegalStateException("Cannot kill the child process " + descendant, ex);
+                }
+            }
+        } else if (!descendants.isEmpty()) {
+            List<String> command = new ArrayList<>(Arrays.asList("kill", "-KILL"));
+            descendants.forEach(pid -> command.add(pid.toString()));
+            new ProcessBuilder(command).redirectErrorStream(true).start().waitFor();
+        }
+    }
+
+    private static Integer unixProcessId(Process process) {
+        try {
+            Field pid = process.getClass().getDeclaredField("pid");
+            pid.setAccessible(true);
+            return pid.getInt(process);
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        }
+    }
+
+    // collects all descendants before any of them is killed, the orphans would not be found anymore
+    private static List<String> findDescendantsWithPgrep(int pid) throws IOException, InterruptedException {
+        List<String> result = new ArrayList<>();
+        Deque<String> parents = new ArrayDeque<>();
+        parents.push(Integer.toString(pid));
+        while (!parents.isEmpty()) {
+            Process pgrep = new ProcessBuilder("pgrep", "-P", parents.pop()).redirectErrorStream(true).start();
+            List<String> children;
+            try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(pgrep.getInputStream(), StandardCharsets.UTF_8))) {
+                children = reader.lines()
+                    .map(String::trim)
+                    .filter(it -> it.matches("\\d+"))
+                    .collect(Collectors.toList());
+            }
+            pgrep.waitFor();
+            result.addAll(children);
+            children.forEach(parents::push);
+        }
+        return result;
+    }
+
+    static IllegalStateException missingExecutable() {
+        return new IllegalStateException("The property " + NETBEANS_EXECUTABLE_PROPERTY
+            + " is not specified, you should define it in ~/.gradle/gradle.properties");
+    }
+
+    private NetBeansLaunchUtils() {
+        throw new AssertionError();
+    }
+}
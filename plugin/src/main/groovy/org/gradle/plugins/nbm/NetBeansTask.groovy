@@ -1,14 +1,17 @@
 package org.gradle.plugins.nbm
 
+import groovy.io.FileType
 import org.apache.tools.ant.taskdefs.Taskdef
 import org.apache.tools.ant.types.FileSet
 import org.apache.tools.ant.types.Path
 import org.gradle.api.AntBuilder
 import org.gradle.api.DefaultTask
+import org.gradle.api.GradleException
 import org.gradle.api.artifacts.Configuration
 import org.gradle.api.file.ConfigurableFileCollection
 import org.gradle.api.file.CopySpec
 import org.gradle.api.file.DirectoryProperty
+import org.gradle.api.file.FileCopyDetails
 import org.gradle.api.file.FileSystemOperations
 import org.gradle.api.file.FileTreeElement
 import org.gradle.api.file.RegularFileProperty
@@ -21,6 +24,8 @@ import org.gradle.api.tasks.Internal
 import org.gradle.api.tasks.Nested
 import org.gradle.api.tasks.Optional
 import org.gradle.api.tasks.OutputDirectory
+import org.gradle.api.tasks.PathSensitive
+import org.gradle.api.tasks.PathSensitivity
 import org.gradle.api.tasks.TaskAction
 
 import javax.inject.Inject
@@ -30,6 +35,8 @@ import java.util.jar.JarFile
 
 abstract class NetBeansTask extends DefaultTask {
     public static final String TEST_USER_DIR_NAME = 'testuserdir'
+    private static final String CRC_CACHE_FILE_NAME = 'crc-cache.properties'
+    private static final String JAR_LAYOUT_CACHE_DIR_NAME = 'jar-layout'
 
     private final FileSystemOperations fileOperations;
 
@@ -65,6 +72,22 @@ abstract class NetBeansTask extends DefaultTask {
     @Classpath
     abstract Property<Configuration> getHarnessConfiguration()
 
+    /**
+     * Moves localized bundles of the module JAR into {@code modules/locale} JARs.
+     */
+    @Input
+    @Optional
+    abstract Property<Boolean> getSplitLocaleJars()
+
+    /**
+     * Startup order of classes recorded by {@link StartupOrderTask}. When set, the module JARs
+     * are rewritten to have the startup classes first and uncompressed.
+     */
+    @InputFile
+    @Optional
+    @PathSensitive(PathSensitivity.NONE)
+    abstract RegularFileProperty getStartupOrderFile()
+
     @Inject
     public NetBeansTask(FileSystemOperations fileOperations) {
         this.fileOperations = fileOperations
@@ -114,10 +137,12 @@ abstract class NetBeansTask extends DefaultTask {
 
         def moduleJarName = getOutputModuleJarFileName().get()
 
+        Map<File, File> copiedFiles = [:]
         fileOperations.copy { CopySpec it ->
             it.from(inputModuleJarFile)
             it.into(modulesDir)
             it.rename('.*\\.jar', moduleJarName)
+            it.eachFile { FileCopyDetails fcd -> copiedFiles.put(fcd.file, new File(modulesDir, fcd.path)) }
         }
 
         fileOperations.copy { CopySpec it ->
@@ -132,8 +157,24 @@ abstract class NetBeansTask extends DefaultTask {
                 def attrValue = attrs?.getValue(new Attributes.Name('OpenIDE-Module'))
                 attrValue != null
             }
+            it.eachFile { FileCopyDetails fcd -> copiedFiles.put(fcd.file, new File(modulesExtDir, fcd.path)) }
+        }
+
+        // keep timestamps of unchanged files so that their cached CRCs stay valid
+        copiedFiles.each { File source, File target ->
+            target.setLastModified(source.lastModified())
+        }
+
+        def moduleJar = new File(modulesDir, moduleJarName).toPath()
+        if (splitLocaleJars.getOrElse(false)) {
+            def localeJars = LocaleJarSplitter.split(moduleJar)
+            logger.info "Moved localized bundles into locale JARs ${localeJars.values()}"
+        } else {
+            LocaleJarSplitter.deleteLocaleJars(moduleJar)
         }
 
+        optimizeJarLayout(modulesDir)
+
         AntBuilder antBuilder = antBuilder()
         def moduleXmlTask = antBuilder.antProject.createTask('module-xml')
         moduleXmlTask.xmldir = new File(moduleDir, 'config' + File.separator + 'Modules')
@@ -151,28 +192,65 @@ abstract class NetBeansTask extends DefaultTask {
 
         moduleXmlTask.execute()
 
-        def nbTask = antBuilder.antProject.createTask('genlist')
-        nbTask.outputfiledir = moduleDir
-        nbTask.module = 'modules' + File.separator + moduleJarName
-        FileSet fs = nbTask.createFileSet()
-        fs.dir = moduleDir
-        fs.setIncludes('**')
-        nbTask.execute()
+        writeUpdateTracking(moduleDir, new File(modulesDir, moduleJarName))
+    }
+
+    private void optimizeJarLayout(File modulesDir) {
+        def cacheDir = new File(temporaryDir, JAR_LAYOUT_CACHE_DIR_NAME)
+        def orderFile = startupOrderFile.getOrNull()?.asFile
+        if (orderFile == null) {
+            fileOperations.delete { delete(cacheDir) }
+            return
+        }
+
+        def optimizer = new JarLayoutOptimizer(JarLayoutOptimizer.readStartupOrder(orderFile.toPath()), cacheDir.toPath())
+
+        List<File> jars = []
+        modulesDir.eachFileRecurse(FileType.FILES) { if (it.name.endsWith('.jar')) jars.add(it) }
+
+        int startupEntryCount = 0
+        jars.sort().each { File jar ->
+            long lastModified = jar.lastModified()
+            List<String> startupEntries = optimizer.optimize(jar.toPath())
+            if (!startupEntries.isEmpty()) {
+                // the rewritten content depends on the startup order as well
+                jar.setLastModified(Math.max(lastModified, orderFile.lastModified()))
+                startupEntryCount += startupEntries.size()
+            }
+        }
+        optimizer.pruneCache()
+        logger.info "Moved $startupEntryCount startup entries to the front of the module JARs"
+    }
+
+    private void writeUpdateTracking(File moduleDir, File moduleJar) {
+        def attrs = new JarFile(moduleJar).withCloseable { it.manifest?.mainAttributes }
+        String codeName = attrs?.getValue('OpenIDE-Module')
+        if (codeName == null) {
+            throw new GradleException("${moduleJar} is not a NetBeans module, it has no OpenIDE-Module manifest attribute")
+        }
+        String specificationVersion = attrs.getValue('OpenIDE-Module-Specification-Version')
+        if (specificationVersion == null) {
+            logger.warn "${moduleJar} has no OpenIDE-Module-Specification-Version, update tracking is not generated"
+            return
+        }
+
+        // JARs rewritten with other settings keep the same modification time, their cached CRCs are not valid
+        def orderFile = startupOrderFile.getOrNull()?.asFile
+        String layoutKey = "splitLocaleJars=${splitLocaleJars.getOrElse(false)}," +
+            "startupOrder=${orderFile != null ? JarLayoutOptimizer.hash(orderFile.toPath()) : 'none'}"
+        def writer = new UpdateTrackingWriter(moduleDir.toPath(), new File(temporaryDir, CRC_CACHE_FILE_NAME).toPath(), layoutKey)
+        def trackingFile = writer.write(codeName, specificationVersion, System.currentTimeMillis())
+        logger.info "Generated update tracking file $trackingFile"
     }
 
     private AntBuilder antBuilder() {
         def antProject = ant.antProject
         ant.project.getBuildListeners().firstElement().setMessageOutputLevel(3)
         Taskdef taskdef = antProject.createTask("taskdef")
-        taskdef.classname = "org.netbeans.nbbuild.MakeListOfNBM"
-        taskdef.name = "genlist"
+        taskdef.classname = "org.netbeans.nbbuild.CreateModuleXML"
+        taskdef.name = "module-xml"
         taskdef.classpath = new Path(antProject, getHarnessConfiguration().get().asPath)
         taskdef.execute()
-        Taskdef taskdef2 = antProject.createTask("taskdef")
-        taskdef2.classname = "org.netbeans.nbbuild.CreateModuleXML"
-        taskdef2.name = "module-xml"
-        taskdef2.classpath = new Path(antProject, getHarnessConfiguration().get().asPath)
-        taskdef2.execute()
         return getAnt();
     }
 }
@@ -5,10 +5,13 @@ import org.gradle.api.Project
 import org.gradle.api.artifacts.Configuration
 import org.gradle.api.artifacts.ConfigurationContainer
 import org.gradle.api.artifacts.ConfigurationPublications
+import org.gradle.api.artifacts.ModuleDependency
+import org.gradle.api.artifacts.type.ArtifactTypeDefinition
 import org.gradle.api.attributes.Bundling
 import org.gradle.api.attributes.Category
 import org.gradle.api.attributes.LibraryElements
 import org.gradle.api.attributes.Usage
+import org.gradle.api.attributes.java.TargetJvmVersion
 import org.gradle.api.component.AdhocComponentWithVariants
 import org.gradle.api.file.FileCollection
 import org.gradle.api.file.FileSystemOperations
@@ -26,26 +29,46 @@ import org.gradle.api.tasks.Exec
 import org.gradle.api.tasks.SourceSet
 import org.gradle.api.tasks.SourceSetOutput
 import org.gradle.api.tasks.TaskProvider
+import org.gradle.api.tasks.bundling.Zip
 import org.gradle.api.tasks.compile.JavaCompile
 import org.gradle.jvm.tasks.Jar
+import org.gradle.language.base.plugins.LifecycleBasePlugin
+import org.gradle.process.CommandLineArgumentProvider
 
 import javax.inject.Inject
 
-import java.nio.file.Files
 import java.nio.file.Path
 import java.time.Clock
 
 import static org.gradle.plugins.nbm.NbmPlugin.API_ELEMENTS_CONFIGURATION_NAME
+import static org.gradle.plugins.nbm.NbmPlugin.API_JAR_TASK
+import static org.gradle.plugins.nbm.NbmPlugin.BENCHMARK_STARTUP_TASK
 import static org.gradle.plugins.nbm.NbmPlugin.BUNDLE_CONFIGURATION_NAME
+import static org.gradle.plugins.nbm.NbmPlugin.CDS_ARCHIVE_TASK
+import static org.gradle.plugins.nbm.NbmPlugin.CDS_ARCHIVE_ZIP_TASK
+import static org.gradle.plugins.nbm.NbmPlugin.HOT_RELOAD_TASK
 import static org.gradle.plugins.nbm.NbmPlugin.IMPLEMENTATION_CONFIGURATION_NAME
 import static org.gradle.plugins.nbm.NbmPlugin.MANIFEST_TASK
+import static org.gradle.plugins.nbm.NbmPlugin.MODULE_MANIFEST_ELEMENTS_CONFIGURATION_NAME
+import static org.gradle.plugins.nbm.NbmPlugin.MODULE_STATUS_ELEMENTS_CONFIGURATION_NAME
+import static org.gradle.plugins.nbm.NbmPlugin.MODULE_TEST_BOOT_TASK
+import static org.gradle.plugins.nbm.NbmPlugin.MODULE_TEST_SOURCE_SET_NAME
+import static org.gradle.plugins.nbm.NbmPlugin.MODULE_TEST_TASK
+import static org.gradle.plugins.nbm.NbmPlugin.NBM_API_ATTRIBUTE
+import static org.gradle.plugins.nbm.NbmPlugin.NBM_API_IMPLEMENTATION
+import static org.gradle.plugins.nbm.NbmPlugin.NBM_API_PUBLIC_PACKAGES
 import static org.gradle.plugins.nbm.NbmPlugin.NBM_ARTIFACT_TYPE
 import static org.gradle.plugins.nbm.NbmPlugin.NBM_LIBRARY_ELEMENTS
+import static org.gradle.plugins.nbm.NbmPlugin.NBM_MODULE_CATEGORY
+import static org.gradle.plugins.nbm.NbmPlugin.NBM_MODULE_MANIFEST_USAGE
+import static org.gradle.plugins.nbm.NbmPlugin.NBM_MODULE_STATUS_USAGE
 import static org.gradle.plugins.nbm.NbmPlugin.NBM_TASK
 import static org.gradle.plugins.nbm.NbmPlugin.NETBEANS_TASK
 import static org.gradle.plugins.nbm.NbmPlugin.PROVIDED_COMPILE_CONFIGURATION_NAME
 import static org.gradle.plugins.nbm.NbmPlugin.PROVIDED_RUNTIME_CONFIGURATION_NAME
 import static org.gradle.plugins.nbm.NbmPlugin.RUNTIME_ELEMENTS_CONFIGURATION_NAME
+import static org.gradle.plugins.nbm.NbmPlugin.SMOKE_TEST_TASK
+import static org.gradle.plugins.nbm.NbmPlugin.STARTUP_ORDER_TASK
 
 @PackageScope
 class NmbPluginTaskConfigurer {
@@ -94,14 +117,25 @@ class NmbPluginTaskConfigurer {
         TaskProvider<NetBeansTask> netbeansTaskProvider = setupNetbeansTask(jarTaskProvider, moduleJarFilename)
         TaskProvider<NbmTask> nbmTaskProvider = setupNbmTask(netbeansTaskProvider, moduleJarFilename)
 
-        configureComponent(nbmTaskProvider)
+        TaskProvider<Jar> apiJarTaskProvider = setupApiJarTask()
+
+        configureComponent(nbmTaskProvider, apiJarTaskProvider)
 
         project.tasks.named("assemble").configure {
             dependsOn nbmTaskProvider
         }
 
-        addRunTask(netbeansTaskProvider, 'run', false)
-        addRunTask(netbeansTaskProvider, 'debug', true)
+        TaskProvider<CdsArchiveTask> cdsArchiveTaskProvider = setupCdsArchiveTask(netbeansTaskProvider)
+        setupStartupOrderTask(netbeansTaskProvider)
+
+        addRunTask(netbeansTaskProvider, cdsArchiveTaskProvider, 'run', false)
+        addRunTask(netbeansTaskProvider, cdsArchiveTaskProvider, 'debug', true)
+        setupHotReloadTask(netbeansTaskProvider)
+
+        setupModuleTestTask(netbeansTaskProvider)
+        setupSmokeTestTask(netbeansTaskProvider)
+        setupStartupBenchmarkTask(netbeansTaskProvider)
+        configureModuleGraphElements(manifestTaskTaskProvider, netbeansTaskProvider)
     }
 
     void configureConfigurations() {
@@ -140,10 +174,24 @@ class NmbPluginTaskConfigurer {
             attributes {
                 attribute(Usage.USAGE_ATTRIBUTE, objects.named(Usage, Usage.JAVA_API))
                 attribute(Category.CATEGORY_ATTRIBUTE, objects.named(Category, Category.LIBRARY))
-                attribute(LibraryElements.LIBRARY_ELEMENTS_ATTRIBUTE, objects.named(LibraryElements, NBM_LIBRARY_ELEMENTS))
+                attribute(LibraryElements.LIBRARY_ELEMENTS_ATTRIBUTE, objects.named(LibraryElements, LibraryElements.JAR))
                 attribute(Bundling.BUNDLING_ATTRIBUTE, objects.named(Bundling, Bundling.EXTERNAL))
+                attribute(NBM_API_ATTRIBUTE, NBM_API_PUBLIC_PACKAGES)
+                // same target JVM as the apiElements of the java plugin, so that only the attribute above decides
+                def javaApiAttributes = container.getByName(JavaPlugin.API_ELEMENTS_CONFIGURATION_NAME).attributes
+                attributeProvider(TargetJvmVersion.TARGET_JVM_VERSION_ATTRIBUTE,
+                    providers.provider { javaApiAttributes.getAttribute(TargetJvmVersion.TARGET_JVM_VERSION_ATTRIBUTE) })
             }
         }
+        // NBM projects compile against the public packages of other NBM projects, other projects and
+        // external modules without the attribute still match
+        container.getByName(JavaPlugin.COMPILE_CLASSPATH_CONFIGURATION_NAME).attributes {
+            attribute(NBM_API_ATTRIBUTE, NBM_API_PUBLIC_PACKAGES)
+        }
+        // implementation dependencies reach the non-public packages, they compile against the full JAR
+        implementationConfiguration.dependencies.withType(ModuleDependency).configureEach { ModuleDependency dependency ->
+            dependency.attributes { it.attribute(NBM_API_ATTRIBUTE, NBM_API_IMPLEMENTATION) }
+        }
         project.plugins.withType(JavaLibraryPlugin) {
             apiElementsConfiguration.extendsFrom(container.getByName(JavaPlugin.API_CONFIGURATION_NAME))
             apiElementsConfiguration.extendsFrom(container.getByName(JavaPlugin.COMPILE_ONLY_API_CONFIGURATION_NAME))
@@ -286,6 +334,27 @@ class NmbPluginTaskConfigurer {
                 isEager = nbmExtension.eager
             }
             harnessConfiguration = nbmExtension.harnessConfiguration
+            splitLocaleJars = nbmExtension.splitLocaleJars
+            startupOrderFile = nbmExtension.optimizeJarLayout.flatMap { optimize ->
+                optimize ? nbmExtension.startupOrderFile.map { it.asFile.isFile() ? it : null } : providers.provider { null }
+            }
+        }
+    }
+
+    TaskProvider<StartupOrderTask> setupStartupOrderTask(TaskProvider<NetBeansTask> netbeansTaskProvider) {
+        return project.tasks.register(STARTUP_ORDER_TASK, StartupOrderTask) {
+            setDescription "Records the startup class loading order used to lay out the module JARs."
+            setGroup BasePlugin.BUILD_GROUP
+
+            dependsOn netbeansTaskProvider
+            moduleBuildDir = netbeansTaskProvider.flatMap { it.moduleBuildDir }
+            netBeansExecutable = providers.provider {
+                project.findProperty(NetBeansLaunchUtils.NETBEANS_EXECUTABLE_PROPERTY)?.toString()
+            }
+            trainingArguments = nbmExtension.trainingArguments
+            trainingUserDir = projectLayout.buildDirectory.dir('startup-order/userdir')
+            classLoadLog = projectLayout.buildDirectory.file('startup-order/class-load.log')
+            startupOrderFile = nbmExtension.startupOrderFile
         }
     }
 
@@ -313,16 +382,47 @@ class NmbPluginTaskConfigurer {
         return nbmTaskProvider
     }
 
-    void configureComponent(TaskProvider<NbmTask> nbmTaskTaskProvider) {
+    TaskProvider<Jar> setupApiJarTask() {
+        return project.tasks.register(API_JAR_TASK, Jar) {
+            setDescription "Assembles a JAR with the public packages of the module to compile dependent modules against."
+            setGroup BasePlugin.BUILD_GROUP
+
+            Provider<Set<String>> publicPackages = providers.provider { nbmExtension.publicPackages.entries }
+            archiveClassifier = 'api'
+            from project.extensions.getByType(JavaPluginExtension).sourceSets.getByName(SourceSet.MAIN_SOURCE_SET_NAME).output
+            include { FileTreeElement element ->
+                element.directory || isInPublicPackage(element.relativePath.parent.pathString, publicPackages.get())
+            }
+            includeEmptyDirs = false
+        }
+    }
+
+    /**
+     * Checks a package directory against {@code OpenIDE-Module-Public-Packages} entries
+     * ({@code pkg.*} for the package itself and {@code pkg.**} for the package with its subpackages).
+     */
+    static boolean isInPublicPackage(String packagePath, Collection<String> publicPackages) {
+        String packageName = packagePath.replace('/', '.')
+        return publicPackages.any { String entry ->
+            if (entry.endsWith('.**')) {
+                String prefix = entry.substring(0, entry.length() - 3)
+                return packageName == prefix || packageName.startsWith(prefix + '.')
+            }
+            return entry.endsWith('.*') && packageName == entry.substring(0, entry.length() - 2)
+        }
+    }
+
+    void configureComponent(TaskProvider<NbmTask> nbmTaskTaskProvider, TaskProvider<Jar> apiJarTaskProvider) {
         ConfigurationPublications runtimePublications = runtimeElementsConfiguration.getOutgoing()
         runtimePublications.artifact(nbmTaskTaskProvider.flatMap { it.archiveFile }) {
             type = NBM_ARTIFACT_TYPE
             builtBy nbmTaskTaskProvider
         }
+        // only the public packages, so that dependent modules are not recompiled for implementation changes
         ConfigurationPublications apiPublications = apiElementsConfiguration.getOutgoing()
-        apiPublications.artifact(nbmTaskTaskProvider.flatMap { it.archiveFile }) {
-            type = NBM_ARTIFACT_TYPE
-            builtBy nbmTaskTaskProvider
+        apiPublications.artifact(apiJarTaskProvider.flatMap { it.archiveFile }) {
+            type = ArtifactTypeDefinition.JAR_TYPE
+            builtBy apiJarTaskProvider
         }
 
         AdhocComponentWithVariants javaComponent = (AdhocComponentWithVariants) project.components.findByName('java')
@@ -334,18 +434,195 @@ class NmbPluginTaskConfigurer {
         }
     }
 
-    void addRunTask(TaskProvider<NetBeansTask> netBeansTask,  String taskName, boolean debug) {
+    TaskProvider<CdsArchiveTask> setupCdsArchiveTask(TaskProvider<NetBeansTask> netbeansTaskProvider) {
+        def cdsArchiveTask = project.tasks.register(CDS_ARCHIVE_TASK, CdsArchiveTask) {
+            setDescription "Records a class-data sharing archive from a training launch of NetBeans with this module."
+            setGroup BasePlugin.BUILD_GROUP
+
+            def moduleDir = netbeansTaskProvider.flatMap { it.moduleBuildDir }
+            moduleBuildDir = moduleDir
+            moduleJars.from(moduleDir.map { it.asFileTree.matching { include 'modules/**/*.jar' } })
+            netBeansExecutable = providers.provider {
+                project.findProperty(NetBeansLaunchUtils.NETBEANS_EXECUTABLE_PROPERTY)?.toString()
+            }
+            def javaHomeVariable = providers.environmentVariable('JAVA_HOME')
+            // read through the provider factory, so that a changed configuration invalidates the configuration cache
+            jdkHome = netBeansExecutable.flatMap { executable ->
+                Path conf = NetBeansLaunchUtils.launcherConfFile(executable)
+                Provider<String> confText = conf != null
+                    ? providers.fileContents(projectLayout.projectDirectory.file(conf.toString())).asText
+                    : providers.provider { null }
+                confText.orElse('').map { text ->
+                    NetBeansLaunchUtils.findLauncherJdkHome(text, javaHomeVariable.getOrNull())
+                }
+            }
+            jdkReleaseFile = jdkHome.map { jdk ->
+                File release = new File(jdk, 'release')
+                release.isFile() ? projectLayout.projectDirectory.file(release.absolutePath) : null
+            }
+            trainingArguments = nbmExtension.trainingArguments
+            trainingUserDir = projectLayout.buildDirectory.dir('cds/userdir')
+            archiveFile = nbmExtension.cdsArchiveFile
+        }
+
+        project.tasks.register(CDS_ARCHIVE_ZIP_TASK, Zip) {
+            setDescription "Packages the class-data sharing archive for distribution."
+            setGroup BasePlugin.BUILD_GROUP
+
+            from cdsArchiveTask.flatMap { it.archiveFile }
+            archiveClassifier = 'cds'
+            destinationDirectory = nbmExtension.nbmBuildDir
+        }
+        return cdsArchiveTask
+    }
+
+    TaskProvider<HotReloadTask> setupHotReloadTask(TaskProvider<NetBeansTask> netbeansTaskProvider) {
+        return project.tasks.register(HOT_RELOAD_TASK, HotReloadTask) {
+            setDescription "Runs NetBeans with this module and reloads the module into it on later builds, use with --continuous."
+
+            dependsOn netbeansTaskProvider
+            moduleBuildDir = netbeansTaskProvider.flatMap { it.moduleBuildDir }
+            moduleJarFileName = netbeansTaskProvider.flatMap { it.outputModuleJarFileName }
+            netBeansExecutable = providers.provider {
+                project.findProperty(NetBeansLaunchUtils.NETBEANS_EXECUTABLE_PROPERTY)?.toString()
+            }
+            userDir = projectLayout.buildDirectory.dir(NetBeansTask.TEST_USER_DIR_NAME)
+            stateFile = projectLayout.buildDirectory.file('runHot/reloaded-jars.properties')
+            logFile = projectLayout.buildDirectory.file('runHot/netbeans.log')
+        }
+    }
+
+    TaskProvider<SmokeTestTask> setupSmokeTestTask(TaskProvider<NetBeansTask> netbeansTaskProvider) {
+        return project.tasks.register(SMOKE_TEST_TASK, SmokeTestTask) {
+            setDescription "Launches the module cluster headless in the NetBeans platform for a matrix of JDKs and enabled modules."
+            setGroup LifecycleBasePlugin.VERIFICATION_GROUP
+
+            dependsOn netbeansTaskProvider
+            moduleBuildDir = netbeansTaskProvider.flatMap { it.moduleBuildDir }
+            platformDir = nbmExtension.platformDir
+            workDir = projectLayout.buildDirectory.dir('smokeTest')
+            reportFile = projectLayout.buildDirectory.file('reports/nbm/smoke/smoke.json')
+        }
+    }
+
+    TaskProvider<StartupBenchmarkTask> setupStartupBenchmarkTask(TaskProvider<NetBeansTask> netbeansTaskProvider) {
+        return project.tasks.register(BENCHMARK_STARTUP_TASK, StartupBenchmarkTask) {
+            setDescription "Measures cold and warm headless startup of NetBeans with this module and checks it for regressions."
+
+            dependsOn netbeansTaskProvider
+            moduleBuildDir = netbeansTaskProvider.flatMap { it.moduleBuildDir }
+            moduleName = nbmExtension.moduleName
+            netBeansExecutable = providers.provider {
+                project.findProperty(NetBeansLaunchUtils.NETBEANS_EXECUTABLE_PROPERTY)?.toString()
+            }
+            launchArguments = nbmExtension.trainingArguments
+            workDir = projectLayout.buildDirectory.dir('benchmarkStartup')
+            historyFile = projectLayout.projectDirectory.file('startup-benchmark-history.json')
+            buildVersion = providers.provider { project.version.toString() }
+        }
+    }
+
+    /**
+     * Publishes the generated manifest and the module status directory for the {@code nbmModuleGraph}
+     * task of {@link NbmModuleGraphPlugin}.
+     */
+    void configureModuleGraphElements(TaskProvider<ModuleManifestTask> manifestTaskProvider,
+                                      TaskProvider<NetBeansTask> netbeansTaskProvider) {
+        ConfigurationContainer container = project.configurations
+        container.create(MODULE_MANIFEST_ELEMENTS_CONFIGURATION_NAME).tap {
+            visible = false
+            description = "Generated manifest of the NBM module"
+            canBeConsumed = true
+            canBeResolved = false
+            attributes {
+                attribute(Usage.USAGE_ATTRIBUTE, objects.named(Usage, NBM_MODULE_MANIFEST_USAGE))
+                attribute(Category.CATEGORY_ATTRIBUTE, objects.named(Category, NBM_MODULE_CATEGORY))
+            }
+            outgoing.artifact(manifestTaskProvider.flatMap { it.generatedManifestFile }) {
+                builtBy manifestTaskProvider
+            }
+        }
+        container.create(MODULE_STATUS_ELEMENTS_CONFIGURATION_NAME).tap {
+            visible = false
+            description = "config/Modules directory of the NBM module"
+            canBeConsumed = true
+            canBeResolved = false
+            attributes {
+                attribute(Usage.USAGE_ATTRIBUTE, objects.named(Usage, NBM_MODULE_STATUS_USAGE))
+                attribute(Category.CATEGORY_ATTRIBUTE, objects.named(Category, NBM_MODULE_CATEGORY))
+            }
+            outgoing.artifact(netbeansTaskProvider.flatMap { it.moduleBuildDir.dir('config/Modules') }) {
+                type = ArtifactTypeDefinition.DIRECTORY_TYPE
+                builtBy netbeansTaskProvider
+            }
+        }
+    }
+
+    /**
+     * Module system tests have their own source set, the tests of the {@code test} source set
+     * keep running with the module classes on the classpath.
+     */
+    TaskProvider<ModuleTestTask> setupModuleTestTask(TaskProvider<NetBeansTask> netbeansTaskProvider) {
+        def sourceSets = project.extensions.getByType(JavaPluginExtension).sourceSets
+        SourceSet mainSourceSet = sourceSets.getByName(SourceSet.MAIN_SOURCE_SET_NAME)
+        SourceSet testSourceSet = sourceSets.getByName(SourceSet.TEST_SOURCE_SET_NAME)
+        SourceSet moduleTestSourceSet = sourceSets.create(MODULE_TEST_SOURCE_SET_NAME)
+        ConfigurationContainer container = project.configurations
+        container.getByName(moduleTestSourceSet.implementationConfigurationName)
+            .extendsFrom(container.getByName(testSourceSet.implementationConfigurationName))
+        container.getByName(moduleTestSourceSet.compileOnlyConfigurationName)
+            .extendsFrom(container.getByName(testSourceSet.compileOnlyConfigurationName))
+        container.getByName(moduleTestSourceSet.runtimeOnlyConfigurationName)
+            .extendsFrom(container.getByName(testSourceSet.runtimeOnlyConfigurationName))
+
+        def bootTask = project.tasks.register(MODULE_TEST_BOOT_TASK, ModuleTestBootTask) {
+            setDescription "Generates the JUnit extension booting the module system for the module system tests."
+            sourceDir = projectLayout.buildDirectory.dir('generated/sources/moduleTestBoot/java')
+            resourceDir = projectLayout.buildDirectory.dir('generated/resources/moduleTestBoot')
+        }
+        moduleTestSourceSet.java.srcDir(bootTask.flatMap { it.sourceDir })
+        moduleTestSourceSet.resources.srcDir(bootTask.flatMap { it.resourceDir })
+
+        return project.tasks.register(MODULE_TEST_TASK, ModuleTestTask) {
+            setDescription "Runs the tests of the moduleTest source set inside the NetBeans module system with this module installed."
+            setGroup LifecycleBasePlugin.VERIFICATION_GROUP
+
+            def platformBootJars = providers.provider {
+                def platform = nbmExtension.platformDir.getOrNull()
+                if (platform == null) {
+                    return []
+                }
+                def home = NetBeansLaunchUtils.findHomeCluster(platform.asFile)
+                return project.fileTree(home) { include 'lib/*.jar', 'core/*.jar' }
+            }
+
+            testClassesDirs = moduleTestSourceSet.output.classesDirs
+            // the module and its runtime dependencies are loaded from the clusters only, having them
+            // on the application classpath as well would define every class twice
+            def testOnlyRuntimeClasspath = container.getByName(moduleTestSourceSet.runtimeClasspathConfigurationName) -
+                mainSourceSet.runtimeClasspath
+            classpath = moduleTestSourceSet.output + testOnlyRuntimeClasspath + project.files(platformBootJars)
+            moduleBuildDir = netbeansTaskProvider.flatMap { it.moduleBuildDir }
+            platformDir = nbmExtension.platformDir
+            maxParallelForks = Math.max(1, Runtime.runtime.availableProcessors().intdiv(2))
+            shouldRunAfter JavaPlugin.TEST_TASK_NAME
+        }
+    }
+
+    void addRunTask(TaskProvider<NetBeansTask> netBeansTask,
+                    TaskProvider<CdsArchiveTask> cdsArchiveTask,
+                    String taskName,
+                    boolean debug) {
         project.tasks.register(taskName, Exec) {
             dependsOn netBeansTask
+            dependsOn nbmExtension.useCdsArchive.map { it ? [cdsArchiveTask] : [] }
             doNotTrackState("Needs to re-run every time")
 
             Path buildPath = project.buildDir.toPath()
             Path testUserDir = buildPath.resolve(NetBeansTask.TEST_USER_DIR_NAME)
-            if (project.hasProperty('netBeansExecutable')) {
+            if (project.hasProperty(NetBeansLaunchUtils.NETBEANS_EXECUTABLE_PROPERTY)) {
                 doFirst {
-                    def confFile = testUserDir.resolve('etc').resolve('netbeans.conf')
-                    Files.createDirectories(confFile.parent)
-                    confFile.toFile().write "netbeans_extraclusters=\"${buildPath.resolve('module')}\""
+                    NetBeansLaunchUtils.writeExtraClustersConf(testUserDir, buildPath.resolve('module'))
                 }
 
                 workingDir project.buildDir
@@ -369,9 +646,25 @@ class NmbPluginTaskConfigurer {
                     args.add("-J-agentlib:jdwp=transport=dt_socket,server=y,address=${nbmDebugPort}")
                 }
                 commandLine args
+
+                Provider<File> sharedArchive = nbmExtension.useCdsArchive.flatMap { useArchive ->
+                    useArchive ? cdsArchiveTask.flatMap { it.archiveFile }.map { it.asFile } : providers.provider { null }
+                }
+                Provider<String> archiveJdkHome = cdsArchiveTask.flatMap { it.jdkHome }
+                argumentProviders.add({
+                    File archive = sharedArchive.getOrNull()
+                    if (archive == null) {
+                        return []
+                    }
+                    // the archive is only accepted by the JVM which recorded it
+                    String jdk = archiveJdkHome.getOrNull()
+                    List<String> archiveArgs = jdk != null ? ['--jdkhome', jdk] : []
+                    archiveArgs.add("-J-XX:SharedArchiveFile=${archive}".toString())
+                    return archiveArgs
+                } as CommandLineArgumentProvider)
             } else {
                 doFirst {
-                    throw new IllegalStateException('The property netBeansExecutable is not specified, you should define it in ~/.gradle/gradle.properties')
+                    throw NetBeansLaunchUtils.missingExecutable()
                 }
             }
         }
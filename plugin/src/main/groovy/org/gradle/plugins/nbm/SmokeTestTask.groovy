@@ -0,0 +1,209 @@
+package org.gradle.plugins.nbm
+
+import groovy.json.JsonOutput
+import org.gradle.api.DefaultTask
+import org.gradle.api.GradleException
+import org.gradle.api.file.DirectoryProperty
+import org.gradle.api.file.FileSystemOperations
+import org.gradle.api.file.RegularFileProperty
+import org.gradle.api.provider.MapProperty
+import org.gradle.api.provider.Property
+import org.gradle.api.tasks.Internal
+import org.gradle.api.tasks.TaskAction
+
+import javax.inject.Inject
+
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+
+/**
+ * Launches the module cluster headless in a locally provided NetBeans platform for every
+ * combination of a JDK and a module enablement set. The launches run concurrently, each one
+ * in its own user directory, and the task writes a JSON report with the boot errors, the time
+ * it took to enable the modules and the heap in use of every launch.
+ */
+abstract class SmokeTestTask extends DefaultTask {
+
+    @Inject
+    protected abstract FileSystemOperations getFileSystemOperations()
+
+    @Internal
+    abstract DirectoryProperty getModuleBuildDir()
+
+    /**
+     * NetBeans platform (or IDE) installation providing the launcher and the other clusters.
+     */
+    @Internal
+    abstract DirectoryProperty getPlatformDir()
+
+    /**
+     * JDK installations to launch with, by name.
+     */
+    @Internal
+    abstract MapProperty<String, String> getJavaHomes()
+
+    /**
+     * Code name bases of the modules to enable, by name of the set. An empty set launches
+     * with the modules enabled by default.
+     */
+    @Internal
+    abstract MapProperty<String, List<String>> getEnablementSets()
+
+    /**
+     * Number of NetBeans instances launched at the same time.
+     */
+    @Internal
+    abstract Property<Integer> getMaxParallelLaunches()
+
+    @Internal
+    abstract Property<Integer> getLaunchTimeoutSeconds()
+
+    @Internal
+    abstract Property<Boolean> getIgnoreFailures()
+
+    /**
+     * User directories and logs of the launches.
+     */
+    @Internal
+    abstract DirectoryProperty getWorkDir()
+
+    @Internal
+    abstract RegularFileProperty getReportFile()
+
+    SmokeTestTask() {
+        javaHomes.convention([current: System.getProperty('java.home')])
+        enablementSets.convention([default: []])
+        maxParallelLaunches.convention(Math.max(1, Runtime.runtime.availableProcessors().intdiv(2)))
+        launchTimeoutSeconds.convention(300)
+        ignoreFailures.convention(false)
+        doNotTrackState("Launches NetBeans to check the current state of the environment")
+    }
+
+    @TaskAction
+    void smokeTest() {
+        File platform = platformDir.getOrNull()?.asFile
+        if (platform == null) {
+            throw new IllegalStateException('The NetBeans platform directory is not specified, ' +
+                'set nbm.platformDir or the netBeansPlatformDir property')
+        }
+        File home = NetBeansLaunchUtils.findHomeCluster(platform)
+        File launcher = findLauncher(home)
+        List<File> clusters = NetBeansLaunchUtils.findClusters(platform) - home
+        clusters.add(moduleBuildDir.get().asFile)
+
+        File work = workDir.get().asFile
+        fileSystemOperations.delete { delete work }
+
+        List<Map<String, Object>> launches = []
+        javaHomes.get().each { jdkName, javaHome ->
+            enablementSets.get().each { setName, modules ->
+                launches.add([jdk: jdkName, javaHome: javaHome, enablementSet: setName, modules: modules,
+                              dir: new File(work, "${jdkName}-${setName}")])
+            }
+        }
+
+        logger.lifecycle "Launching ${launches.size()} configurations, ${maxParallelLaunches.get()} at a time"
+        ExecutorService executor = Executors.newFixedThreadPool(maxParallelLaunches.get())
+        List<Map<String, Object>> results
+        try {
+            List<Future<Map<String, Object>>> futures = launches.collect { Map<String, Object> configuration ->
+                executor.submit({ launch(launcher, clusters, configuration) } as Callable<Map<String, Object>>)
+            }
+            results = futures*.get()
+        } finally {
+            executor.shutdownNow()
+        }
+
+        def report = reportFile.get().asFile
+        report.parentFile.mkdirs()
+        report.setText(JsonOutput.prettyPrint(JsonOutput.toJson([
+            platformDir: platform.path,
+            clusters   : clusters*.path,
+            launches   : results,
+        ])), 'UTF-8')
+
+        List<Map<String, Object>> failed = results.findAll { it.status != 'passed' }
+        results.each {
+            logger.lifecycle "${it.jdk} / ${it.enablementSet}: ${it.status}, enabled in ${it.enablementTimeMs ?: '?'} ms, " +
+                "exited after ${it.wallTimeMs} ms, heap used ${it.heapUsedKb ?: '?'} KiB"
+        }
+        if (!failed.isEmpty()) {
+            String message = "${failed.size()} of ${results.size()} smoke launches failed, see $report"
+            if (ignoreFailures.get()) {
+                logger.warn message
+            } else {
+                throw new GradleException(message)
+            }
+        }
+    }
+
+    private Map<String, Object> launch(File launcher, List<File> clusters, Map<String, Object> configuration) {
+        File dir = configuration.dir as File
+        File userDir = new File(dir, 'userdir')
+        File outputLog = new File(dir, 'output.log')
+        File gcLog = new File(dir, 'gc.log')
+        dir.mkdirs()
+
+        String javaHome = configuration.javaHome
+        List<String> command = [launcher.path,
+                                '--jdkhome', javaHome,
+                                '--clusters', clusters*.path.join(File.pathSeparator),
+                                '--userdir', userDir.path,
+                                '-J-Djava.awt.headless=true',
+                                NetBeansLaunchUtils.STARTUP_LOG_ARGUMENT]
+        if (NetBeansLaunchUtils.supportsUnifiedLogging(new File(javaHome).toPath())) {
+            command.add("-J-Xlog:gc+heap+exit=info:file=${gcLog.path}".toString())
+        }
+        command.addAll(['--nogui', '--modules'])
+        List<String> modules = configuration.modules as List<String>
+        if (modules.isEmpty()) {
+            command.add('--list')
+        } else {
+            command.addAll(['--enable', modules.join(',')])
+        }
+
+        long start = System.nanoTime()
+        Process process = new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(outputLog)
+            .start()
+        boolean timedOut = !process.waitFor(launchTimeoutSeconds.get(), TimeUnit.SECONDS)
+        if (timedOut) {
+            NetBeansLaunchUtils.destroyProcessTree(process)
+        }
+        long wallTimeMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+
+        File messagesLog = new File(userDir, 'var/log/messages.log')
+        List<String> errors = messagesLog.isFile()
+            ? NetBeansLaunchUtils.findBootErrors(messagesLog.readLines('UTF-8'))
+            : ["No ${messagesLog} was written".toString()]
+        Map<String, Long> startupLog = NetBeansLaunchUtils.parseStartupLog(outputLog.readLines('UTF-8'))
+        Integer exitCode = timedOut ? null : process.exitValue()
+
+        return [
+            jdk             : configuration.jdk,
+            javaHome        : javaHome,
+            enablementSet   : configuration.enablementSet,
+            modules         : modules,
+            status          : timedOut ? 'timed out' : (exitCode != 0 || !errors.isEmpty() ? 'failed' : 'passed'),
+            exitCode        : exitCode,
+            wallTimeMs      : wallTimeMs,
+            enablementTimeMs: startupLog.get(NetBeansLaunchUtils.MODULES_INITIALIZED),
+            heapUsedKb      : gcLog.isFile() ? NetBeansLaunchUtils.parseHeapUsedKb(gcLog.readLines('UTF-8')) : null,
+            errors          : errors,
+            logDir          : dir.path,
+        ]
+    }
+
+    private static File findLauncher(File homeCluster) {
+        boolean windows = System.getProperty('os.name').toLowerCase(Locale.ROOT).contains('windows')
+        File launcher = new File(homeCluster, windows ? 'lib/nbexec64.exe' : 'lib/nbexec')
+        if (!launcher.isFile()) {
+            throw new IllegalStateException("The NetBeans platform launcher $launcher does not exist")
+        }
+        return launcher
+    }
+}
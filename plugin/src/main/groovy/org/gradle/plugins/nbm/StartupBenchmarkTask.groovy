@@ -0,0 +1,275 @@
+package org.gradle.plugins.nbm
+
+import groovy.json.JsonOutput
+import groovy.json.JsonSlurper
+import org.gradle.api.DefaultTask
+import org.gradle.api.GradleException
+import org.gradle.api.file.DirectoryProperty
+import org.gradle.api.file.FileSystemOperations
+import org.gradle.api.file.RegularFileProperty
+import org.gradle.api.provider.ListProperty
+import org.gradle.api.provider.Property
+import org.gradle.api.tasks.Internal
+import org.gradle.api.tasks.TaskAction
+import org.gradle.process.ExecOperations
+
+import javax.inject.Inject
+
+import java.time.Instant
+import java.util.concurrent.TimeUnit
+
+/**
+ * Measures the startup of NetBeans with the module cluster of this project by repeated headless
+ * launches. Cold launches start with new user and cache directories, warm launches reuse the
+ * directories of a priming launch.
+ * <p>
+ * Every launch prints the NetBeans startup log. The task records the wall time of the launch,
+ * the time until all modules are initialized, and the duration of every startup step. Steps
+ * whose message names the module are also reported per module. The task fails when a median is
+ * slower than the baseline by more than the regression threshold. The baseline is the median of
+ * the last entries of the history file, or a fixed baseline file when one is set. The statistics
+ * are appended to the history unless the task fails.
+ */
+abstract class StartupBenchmarkTask extends DefaultTask {
+    static final String WALL_TIME = 'wallTimeMs'
+    static final String MODULES_INITIALIZED_TIME = 'modulesInitializedMs'
+
+    @Inject
+    protected abstract ExecOperations getExecOperations()
+
+    @Inject
+    protected abstract FileSystemOperations getFileSystemOperations()
+
+    @Internal
+    abstract DirectoryProperty getModuleBuildDir()
+
+    /**
+     * Code name base of the module, used to attribute startup steps to it.
+     */
+    @Internal
+    abstract Property<String> getModuleName()
+
+    @Internal
+    abstract Property<String> getNetBeansExecutable()
+
+    @Internal
+    abstract ListProperty<String> getLaunchArguments()
+
+    /**
+     * Number of measured launches of each kind.
+     */
+    @Internal
+    abstract Property<Integer> getIterations()
+
+    /**
+     * Allowed slowdown of a median compared to the baseline, in percent.
+     */
+    @Internal
+    abstract Property<Double> getRegressionThresholdPercent()
+
+    @Internal
+    abstract Property<Boolean> getIgnoreRegressions()
+
+    @Internal
+    abstract DirectoryProperty getWorkDir()
+
+    /**
+     * History of the results, {@code startup-benchmark-history.json} of the project directory by default.
+     * It is outside the build directory so that it survives {@code clean}, keep it with the sources or in
+     * the cache of the CI server, otherwise every benchmark runs without a baseline.
+     */
+    @Internal
+    abstract RegularFileProperty getHistoryFile()
+
+    /**
+     * Number of the last history entries whose medians make up the baseline.
+     */
+    @Internal
+    abstract Property<Integer> getBaselineEntries()
+
+    /**
+     * Fixed baseline to compare with instead of the history, a result in the format of the history entries.
+     */
+    @Internal
+    abstract RegularFileProperty getBaselineFile()
+
+    /**
+     * Version of the project the results are recorded for.
+     */
+    @Internal
+    abstract Property<String> getBuildVersion()
+
+    StartupBenchmarkTask() {
+        iterations.convention(5)
+        regressionThresholdPercent.convention(10d)
+        baselineEntries.convention(5)
+        ignoreRegressions.convention(false)
+        doNotTrackState("Launches NetBeans to measure the startup every time")
+    }
+
+    @TaskAction
+    void benchmark() {
+        String executable = netBeansExecutable.getOrNull()
+        if (executable == null) {
+            throw NetBeansLaunchUtils.missingExecutable()
+        }
+
+        File work = workDir.get().asFile
+        fileSystemOperations.delete { delete work }
+
+        List<Map<String, Object>> cold = (1..iterations.get()).collect {
+            launch(executable, new File(work, "cold-$it"), new File(work, "cold-$it-output.log"))
+        }
+
+        File warmDir = new File(work, 'warm')
+        launch(executable, warmDir, new File(work, 'warm-priming-output.log'))
+        List<Map<String, Object>> warm = (1..iterations.get()).collect {
+            launch(executable, warmDir, new File(work, "warm-$it-output.log"))
+        }
+
+        Map<String, Object> result = [
+            timestamp : Instant.now().toString(),
+            version   : buildVersion.getOrNull(),
+            iterations: iterations.get(),
+            cold      : summarize(cold),
+            warm      : summarize(warm),
+        ]
+        result.cold.each { metric, stats -> logger.lifecycle "cold $metric: $stats" }
+        result.warm.each { metric, stats -> logger.lifecycle "warm $metric: $stats" }
+
+        File history = historyFile.get().asFile
+        List<Map<String, Object>> entries = history.isFile()
+            ? new JsonSlurper().parse(history, 'UTF-8') as List<Map<String, Object>>
+            : []
+        File fixedBaseline = baselineFile.getOrNull()?.asFile
+        List<Map<String, Object>> baseline = fixedBaseline != null
+            ? [new JsonSlurper().parse(fixedBaseline, 'UTF-8') as Map<String, Object>]
+            : entries.takeRight(baselineEntries.get())
+        if (baseline.isEmpty()) {
+            logger.warn "No startup benchmarks in $history to compare with, regressions are not checked. " +
+                "The result is recorded as the first entry of the baseline."
+        }
+        List<String> regressions = findRegressions(baseline, result, regressionThresholdPercent.get())
+
+        if (!regressions.isEmpty()) {
+            String message = "Startup regressed by more than ${regressionThresholdPercent.get()}% compared to " +
+                "${fixedBaseline ?: "the last ${baseline.size()} benchmarks in $history"}:\n  ${regressions.join('\n  ')}"
+            if (!ignoreRegressions.get()) {
+                // not added to the history, so that a regression does not become the new baseline
+                throw new GradleException(message)
+            }
+            logger.warn message
+        }
+
+        entries.add(result)
+        history.parentFile.mkdirs()
+        history.setText(JsonOutput.prettyPrint(JsonOutput.toJson(entries)), 'UTF-8')
+    }
+
+    private Map<String, Object> launch(String executable, File userDir, File outputLog) {
+        NetBeansLaunchUtils.writeExtraClustersConf(userDir.toPath(), moduleBuildDir.get().asFile.toPath())
+
+        List<String> args = [executable,
+                             '--userdir', userDir.path,
+                             '--cachedir', new File(userDir, 'var/cache').path,
+                             NetBeansLaunchUtils.STARTUP_LOG_ARGUMENT]
+        args.addAll(launchArguments.get())
+
+        long start = System.nanoTime()
+        outputLog.withOutputStream { output ->
+            execOperations.exec {
+                commandLine args
+                standardOutput = output
+                errorOutput = output
+            }
+        }
+        long wallTimeMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+
+        Map<String, Long> startupLog = NetBeansLaunchUtils.parseStartupLog(outputLog.readLines('UTF-8'))
+        return [
+            (WALL_TIME)               : wallTimeMs,
+            (MODULES_INITIALIZED_TIME): startupLog.get(NetBeansLaunchUtils.MODULES_INITIALIZED),
+            steps                     : stepDurations(startupLog),
+        ]
+    }
+
+    private Map<String, Object> summarize(List<Map<String, Object>> launches) {
+        Map<String, Object> result = [:]
+        [WALL_TIME, MODULES_INITIALIZED_TIME].each { metric ->
+            List<Long> values = launches.collect { it[metric] as Long }.findAll { it != null }
+            if (!values.isEmpty()) {
+                result[metric] = statistics(values)
+            }
+        }
+
+        String module = moduleName.get()
+        Map<String, List<Long>> moduleSteps = [:]
+        launches.each { launch ->
+            (launch.steps as Map<String, Long>).each { step, duration ->
+                if (step.contains(module)) {
+                    moduleSteps.computeIfAbsent(step) { [] }.add(duration)
+                }
+            }
+        }
+        result.moduleSteps = moduleSteps.collectEntries { step, durations -> [(step): statistics(durations)] }
+        return result
+    }
+
+    /**
+     * Duration of every startup step, the time since the previous message of the startup log.
+     */
+    static Map<String, Long> stepDurations(Map<String, Long> startupLog) {
+        Map<String, Long> result = [:]
+        long previous = 0
+        startupLog.each { message, time ->
+            result.put(message, time - previous)
+            previous = time
+        }
+        return result
+    }
+
+    static Map<String, Object> statistics(List<Long> values) {
+        List<Long> sorted = values.sort(false)
+        int count = sorted.size()
+        double mean = (sorted.sum() as double) / count
+        double variance = (sorted.collect { (it - mean) * (it - mean) }.sum() as double) / count
+        return [
+            min   : sorted.first(),
+            max   : sorted.last(),
+            median: median(sorted),
+            mean  : Math.round(mean * 10) / 10d,
+            p90   : sorted[Math.max(0, (int) Math.ceil(count * 0.9d) - 1)],
+            stddev: Math.round(Math.sqrt(variance) * 10) / 10d,
+        ]
+    }
+
+    private static double median(List<? extends Number> sorted) {
+        int count = sorted.size()
+        return count % 2 == 1
+            ? sorted[count.intdiv(2)] as double
+            : (sorted[count.intdiv(2) - 1] + sorted[count.intdiv(2)]) / 2d
+    }
+
+    /**
+     * Medians of the current result slower than the baseline by more than the threshold. The baseline
+     * of a metric is the median of its medians in the given results, so that a single noisy result
+     * does not decide.
+     */
+    static List<String> findRegressions(List<Map<String, Object>> baseline, Map<String, Object> current, double thresholdPercent) {
+        List<String> result = []
+        ['cold', 'warm'].each { kind ->
+            [WALL_TIME, MODULES_INITIALIZED_TIME].each { metric ->
+                List<Double> before = baseline.collect { it[kind]?.getAt(metric)?.median as Double }.findAll { it }
+                def now = current[kind]?.getAt(metric)?.median as Double
+                if (before.isEmpty() || !now) {
+                    return
+                }
+                double expected = median(before.sort(false))
+                if (now > expected * (1 + thresholdPercent / 100)) {
+                    result.add("$kind $metric median ${now} ms, baseline ${expected} ms".toString())
+                }
+            }
+        }
+        return result
+    }
+}
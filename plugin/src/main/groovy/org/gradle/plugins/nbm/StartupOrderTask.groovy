@@ -0,0 +1,90 @@
+package org.gradle.plugins.nbm
+
+import org.gradle.api.DefaultTask
+import org.gradle.api.GradleException
+import org.gradle.api.file.DirectoryProperty
+import org.gradle.api.file.FileSystemOperations
+import org.gradle.api.file.RegularFileProperty
+import org.gradle.api.provider.ListProperty
+import org.gradle.api.provider.Property
+import org.gradle.api.tasks.Internal
+import org.gradle.api.tasks.TaskAction
+import org.gradle.process.ExecOperations
+
+import javax.inject.Inject
+
+/**
+ * Records the order in which classes of the module cluster are loaded during a training
+ * launch of NetBeans. The {@code netbeans} task uses the recorded order to lay out the module
+ * JARs when {@code nbm.optimizeJarLayout} is enabled.
+ */
+abstract class StartupOrderTask extends DefaultTask {
+
+    @Inject
+    protected abstract ExecOperations getExecOperations()
+
+    @Inject
+    protected abstract FileSystemOperations getFileSystemOperations()
+
+    @Internal
+    abstract DirectoryProperty getModuleBuildDir()
+
+    @Internal
+    abstract Property<String> getNetBeansExecutable()
+
+    @Internal
+    abstract ListProperty<String> getTrainingArguments()
+
+    @Internal
+    abstract DirectoryProperty getTrainingUserDir()
+
+    @Internal
+    abstract RegularFileProperty getClassLoadLog()
+
+    /**
+     * The recorded startup order, it is meant to be kept with the sources of the module.
+     */
+    @Internal
+    abstract RegularFileProperty getStartupOrderFile()
+
+    StartupOrderTask() {
+        doNotTrackState("Launches NetBeans to record a new startup order every time")
+    }
+
+    @TaskAction
+    void record() {
+        String executable = netBeansExecutable.getOrNull()
+        if (executable == null) {
+            throw NetBeansLaunchUtils.missingExecutable()
+        }
+
+        def userDir = trainingUserDir.get().asFile
+        def log = classLoadLog.get().asFile
+        def clusterDir = moduleBuildDir.get().asFile
+        fileSystemOperations.delete {
+            delete userDir, log
+        }
+        log.parentFile.mkdirs()
+
+        NetBeansLaunchUtils.writeExtraClustersConf(userDir.toPath(), clusterDir.toPath())
+
+        List<String> args = [executable, '--userdir', userDir.path, "-J-Xlog:class+load=info:file=${log.path}".toString()]
+        args.addAll(trainingArguments.get())
+        execOperations.exec {
+            commandLine args
+        }
+
+        if (!log.isFile()) {
+            throw new GradleException("The training launch did not write the class loading log ${log}")
+        }
+
+        List<String> order = JarLayoutOptimizer.parseClassLoadLog(log.readLines('UTF-8'), clusterDir.toURI().path)
+        def orderFile = startupOrderFile.get().asFile
+        orderFile.parentFile.mkdirs()
+        orderFile.withWriter('UTF-8') { writer ->
+            writer.writeLine "# Startup load order of classes from the module cluster, recorded by ${path}"
+            order.each { writer.writeLine it }
+        }
+        logger.lifecycle "Recorded startup order of ${order.size()} classes into $orderFile"
+    }
+}
@@ -0,0 +1,220 @@
+package org.gradle.plugins.nbm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Writes the {@code update_tracking} file of a module in the same format as the
+ * {@code genlist} Ant task of the NetBeans harness ({@code MakeListOfNBM}).
+ * <p>
+ * CRCs of the cluster files are computed in parallel, large files are read through
+ * memory mapped buffers. Computed CRCs are cached by relative path, size, modification
+ * time and the layout key, so unchanged files are not read again by subsequent builds.
+ * The layout key identifies the settings the JARs of the cluster are rewritten with, as
+ * the rewritten JARs keep the modification time of their sources.
+ * <p>
+ * The output differs from the one of {@code genlist} on the same cluster only in:
+ * <ul>
+ * <li>the {@code install_time}, which is the time of the build in both cases,</li>
+ * <li>the order of the files, which are sorted by their path here and listed in the
+ * directory scan order of the file system by {@code genlist},</li>
+ * <li>the {@code update_tracking} directory, which is never listed here, while {@code genlist}
+ * lists a tracking file left by a previous build with the CRC of its previous content,</li>
+ * <li>the line separator, which is always {@code \n} here.</li>
+ * </ul>
+ */
+final class UpdateTrackingWriter {
+    static final String UPDATE_TRACKING_DIR = "update_tracking";
+
+    private static final long MAPPED_READ_THRESHOLD = 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path clusterDir;
+    private final Path cacheFile;
+    private final String layoutKey;
+
+    UpdateTrackingWriter(Path clusterDir, Path cacheFile) {
+        this(clusterDir, cacheFile, "");
+    }
+
+    UpdateTrackingWriter(Path clusterDir, Path cacheFile, String layoutKey) {
+        this.clusterDir = Objects.requireNonNull(clusterDir, "clusterDir");
+        this.cacheFile = cacheFile != null ? cacheFile.toAbsolutePath() : null;
+        this.layoutKey = Objects.requireNonNull(layoutKey, "layoutKey");
+    }
+
+    /**
+     * Writes {@code update_tracking/<code-name-base>.xml} listing all files of the cluster.
+     *
+     * @return the written update tracking file
+     */
+    Path write(String codeName, String specificationVersion, long installTime) throws IOException {
+        Objects.requireNonNull(codeName, "codeName");
+        Objects.requireNonNull(specificationVersion, "specificationVersion");
+
+        Map<String, Long> crcs = computeCrcs(listFiles());
+
+        Path trackingFile = clusterDir.resolve(UPDATE_TRACKING_DIR).resolve(trackingFileName(codeName));
+        Files.createDirectories(trackingFile.getParent());
+
+        String nl = "\n";
+        try (Writer out = Files.newBufferedWriter(trackingFile, StandardCharsets.UTF_8)) {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + nl);
+            out.write("<module codename=\"" + escape(codeName) + "\">" + nl);
+            out.write("    <module_version install_time=\"" + installTime + "\" last=\"true\" origin=\"installer\""
+                + " specification_version=\"" + escape(specificationVersion) + "\">" + nl);
+            for (Map.Entry<String, Long> entry : crcs.entrySet()) {
+                out.write("        <file crc=\"" + entry.getValue() + "\" name=\"" + escape(entry.getKey()) + "\"/>" + nl);
+            }
+            out.write("    </module_version>" + nl);
+            out.write("</module>" + nl);
+        }
+        return trackingFile;
+    }
+
+    static String trackingFileName(String codeName) {
+        int slash = codeName.indexOf('/');
+        String codeNameBase = slash >= 0 ? codeName.substring(0, slash) : codeName;
+        return codeNameBase.replace('.', '-') + ".xml";
+    }
+
+    private List<Path> listFiles() throws IOException {
+        Path trackingDir = clusterDir.resolve(UPDATE_TRACKING_DIR);
+        try (Stream<Path> files = Files.walk(clusterDir)) {
+            return files
+                .filter(Files::isRegularFile)
+                .filter(file -> !file.startsWith(trackingDir))
+                .collect(Collectors.toList());
+        }
+    }
+
+    private Map<String, Long> computeCrcs(List<Path> files) throws IOException {
+        Properties cache = loadCache();
+        Properties updatedCache = new Properties();
+        Map<String, Long> crcs = new ConcurrentHashMap<>();
+
+        try {
+            files.parallelStream().forEach(file -> {
+                String name = relativeName(file);
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                    String stamp = attrs.size() + ":" + attrs.lastModifiedTime().toMillis() + ":" + layoutKey + ":";
+                    String cached = cache.getProperty(name);
+                    long crc;
+                    if (cached != null && cached.startsWith(stamp)) {
+                        crc = Long.parseLong(cached.substring(stamp.length()));
+                    } else {
+                        crc = computeCrc(file, attrs.size());
+                    }
+                    crcs.put(name, crc);
+                    updatedCache.setProperty(name, stamp + crc);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+
+        storeCache(updatedCache);
+        return new TreeMap<>(crcs);
+    }
+
+    private String relativeName(Path file) {
+        List<String> parts = new ArrayList<>();
+        for (Path part : clusterDir.relativize(file)) {
+            parts.add(part.toString());
+        }
+        return String.join("/", parts);
+    }
+
+    static long computeCrc(Path file, long size) throws IOException {
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (size >= MAPPED_READ_THRESHOLD) {
+                long position = 0;
+                while (position < size) {
+                    long length = Math.min(Integer.MAX_VALUE, size - position);
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                    crc.update(buffer);
+                    position += length;
+                }
+            } else {
+                ByteBuffer buffer = ByteBuffer.allocateDirect((int) Math.max(1, Math.min(size, BUFFER_SIZE)));
+                while (channel.read(buffer) > 0) {
+                    buffer.flip();
+                    crc.update(buffer);
+                    buffer.clear();
+                }
+            }
+        }
+        return crc.getValue();
+    }
+
+    private Properties loadCache() {
+        Properties cache = new Properties();
+        if (cacheFile != null && Files.isRegularFile(cacheFile)) {
+            try (InputStream input = Files.newInputStream(cacheFile)) {
+                cache.load(input);
+            } catch (IOException | IllegalArgumentException ex) {
+                // a broken cache only means that all CRCs are computed again
+                cache.clear();
+            }
+        }
+        return cache;
+    }
+
+    private void storeCache(Properties cache) throws IOException {
+        if (cacheFile == null) {
+            return;
+        }
+        Files.createDirectories(cacheFile.getParent());
+        try (OutputStream output = Files.newOutputStream(cacheFile)) {
+            cache.store(output, null);
+        }
+    }
+
+    private static String escape(String value) {
+        StringBuilder result = new StringBuilder(value.length());
+        for (char ch : value.toCharArray()) {
+            switch (ch) {
+                case '&':
+                    result.append("&amp;");
+                    break;
+                case '<':
+                    result.append("&lt;");
+                    break;
+                case '>':
+                    result.append("&gt;");
+                    break;
+                case '"':
+                    result.append("&quot;");
+                    break;
+                default:
+                    result.append(ch);
+            }
+        }
+        return result.toString();
+    }
+}
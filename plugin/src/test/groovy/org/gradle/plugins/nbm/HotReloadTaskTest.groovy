@@ -0,0 +1,70 @@
+package org.gradle.plugins.nbm
+
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+import static org.junit.jupiter.api.Assertions.assertEquals
+import static org.junit.jupiter.api.Assertions.assertFalse
+import static org.junit.jupiter.api.Assertions.assertNotEquals
+import static org.junit.jupiter.api.Assertions.assertNull
+import static org.junit.jupiter.api.Assertions.assertTrue
+
+public class HotReloadTaskTest {
+
+    @TempDir
+    Path tempDir
+
+    // module JAR and ext JARs are hashed by their path in the modules directory
+    @Test
+    public void hashesJars() {
+        Path modules = tempDir.resolve('modules')
+        Files.createDirectories(modules.resolve('ext'))
+        Files.write(modules.resolve('com-foo-acme.jar'), 'module'.bytes)
+        Files.write(modules.resolve('ext/lib.jar'), 'lib'.bytes)
+        Files.write(modules.resolve('ext/readme.txt'), 'text'.bytes)
+
+        def hashes = HotReloadTask.hashJars(modules.toFile())
+        assertEquals(['com-foo-acme.jar', 'ext/lib.jar'] as Set, hashes.stringPropertyNames())
+
+        Files.write(modules.resolve('ext/lib.jar'), 'lib2'.bytes)
+        def changed = HotReloadTask.hashJars(modules.toFile())
+        assertEquals(hashes.getProperty('com-foo-acme.jar'), changed.getProperty('com-foo-acme.jar'))
+        assertNotEquals(hashes.getProperty('ext/lib.jar'), changed.getProperty('ext/lib.jar'))
+        assertTrue(HotReloadTask.hashJars(tempDir.resolve('missing').toFile()).isEmpty())
+    }
+
+    // added, changed and removed JARs all reload the module
+    @Test
+    public void findsChangedJars() {
+        def pushed = new Properties()
+        pushed.putAll(['com-foo-acme.jar': 'a', 'ext/lib.jar': 'b', 'ext/old.jar': 'c'])
+        def current = new Properties()
+        current.putAll(['com-foo-acme.jar': 'a', 'ext/lib.jar': 'B', 'ext/new.jar': 'd'])
+
+        assertEquals(['ext/lib.jar', 'ext/new.jar', 'ext/old.jar'], HotReloadTask.changedJars(current, pushed))
+        assertEquals([], HotReloadTask.changedJars(pushed, pushed))
+    }
+
+    // an instance is running only when the port of its lock file accepts connections
+    @Test
+    public void probesCliPortOfLockFile() {
+        File lockFile = tempDir.resolve('lock').toFile()
+        assertNull(HotReloadTask.readCliPort(lockFile))
+
+        lockFile.bytes = new byte[10]
+        assertNull(HotReloadTask.readCliPort(lockFile), 'port not written yet')
+
+        new ServerSocket(0, 1, InetAddress.loopbackAddress).withCloseable { server ->
+            new DataOutputStream(new FileOutputStream(lockFile)).withCloseable {
+                it.write(new byte[10])
+                it.writeInt(server.localPort)
+            }
+            assertEquals(server.localPort, HotReloadTask.readCliPort(lockFile))
+            assertTrue(HotReloadTask.isListening(server.localPort))
+        }
+        assertFalse(HotReloadTask.isListening(HotReloadTask.readCliPort(lockFile)))
+    }
+}
@@ -0,0 +1,122 @@
+package org.gradle.plugins.nbm
+
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.jar.Attributes
+import java.util.jar.JarEntry
+import java.util.jar.JarFile
+import java.util.jar.JarInputStream
+import java.util.jar.JarOutputStream
+import java.util.jar.Manifest
+import java.util.zip.ZipEntry
+
+import static org.junit.jupiter.api.Assertions.assertEquals
+import static org.junit.jupiter.api.Assertions.assertFalse
+
+public class JarLayoutOptimizerTest {
+
+    @TempDir
+    Path tempDir
+
+    // only classes loaded from the cluster are part of the startup order
+    @Test
+    public void parsesClassLoadLog() {
+        def order = JarLayoutOptimizer.parseClassLoadLog([
+            '[0.012s][info][class,load] java.lang.Object source: shared objects file',
+            '[0.120s][info][class,load] com.foo.Second source: file:/work/build/module/modules/com-foo.jar',
+            '[0.130s][info][class,load] com.foo.First$Inner source: jar:file:/work/build/module/modules/com-foo.jar!/',
+            '[0.140s][info][class,load] com.foo.Second source: file:/work/build/module/modules/com-foo.jar',
+        ], '/work/build/module/')
+
+        assertEquals(['com/foo/Second.class', 'com/foo/First$Inner.class'], order)
+    }
+
+    // startup entries follow the manifest in load order and are stored
+    @Test
+    public void movesStartupEntriesToFront() {
+        Path jar = tempDir.resolve('com-foo.jar')
+        def manifest = new Manifest()
+        manifest.mainAttributes.put(Attributes.Name.MANIFEST_VERSION, '1.0')
+        new JarOutputStream(Files.newOutputStream(jar), manifest).withCloseable { output ->
+            ['com/foo/A.class', 'com/foo/B.class', 'com/foo/C.class', 'com/foo/Bundle.properties'].each {
+                output.putNextEntry(new JarEntry(it))
+                output.write(it.bytes)
+                output.closeEntry()
+            }
+        }
+
+        def optimizer = new JarLayoutOptimizer(['com/foo/C.class', 'com/foo/A.class'], tempDir.resolve('cache'))
+        assertEquals(['com/foo/C.class', 'com/foo/A.class'], optimizer.optimize(jar))
+
+        new JarFile(jar.toFile()).withCloseable { jarFile ->
+            def entries = jarFile.entries().toList()
+            assertEquals(['META-INF/MANIFEST.MF', 'com/foo/C.class', 'com/foo/A.class', 'com/foo/B.class', 'com/foo/Bundle.properties'],
+                entries*.name)
+            assertEquals([ZipEntry.DEFLATED, ZipEntry.STORED, ZipEntry.STORED, ZipEntry.DEFLATED, ZipEntry.DEFLATED],
+                entries*.method)
+            assertEquals('com/foo/C.class', jarFile.getInputStream(jarFile.getEntry('com/foo/C.class')).text)
+            assertEquals('1.0', jarFile.manifest.mainAttributes.getValue(Attributes.Name.MANIFEST_VERSION))
+        }
+    }
+
+    // signature files and other META-INF entries stay in front of the startup entries
+    @Test
+    public void keepsMetaInfEntriesInFront() {
+        Path jar = tempDir.resolve('com-foo.jar')
+        def manifest = new Manifest()
+        manifest.mainAttributes.put(Attributes.Name.MANIFEST_VERSION, '1.0')
+        new JarOutputStream(Files.newOutputStream(jar), manifest).withCloseable { output ->
+            ['com/foo/A.class', 'com/foo/B.class', 'META-INF/services/com.foo.Service', 'META-INF/ACME.SF', 'META-INF/ACME.RSA'].each {
+                output.putNextEntry(new JarEntry(it))
+                output.write(it.bytes)
+                output.closeEntry()
+            }
+        }
+
+        def optimizer = new JarLayoutOptimizer(['com/foo/B.class', 'META-INF/ACME.SF'], tempDir.resolve('cache'))
+        assertEquals(['com/foo/B.class'], optimizer.optimize(jar))
+
+        new JarFile(jar.toFile()).withCloseable { jarFile ->
+            assertEquals(['META-INF/MANIFEST.MF', 'META-INF/services/com.foo.Service', 'META-INF/ACME.SF', 'META-INF/ACME.RSA',
+                          'com/foo/B.class', 'com/foo/A.class'],
+                jarFile.entries().toList()*.name)
+        }
+        new JarInputStream(Files.newInputStream(jar)).withCloseable {
+            assertEquals('1.0', it.manifest.mainAttributes.getValue(Attributes.Name.MANIFEST_VERSION))
+        }
+    }
+
+    // cached JARs of previous builds are deleted, the ones of the current build are kept
+    @Test
+    public void prunesUnusedCachedJars() {
+        Path cache = tempDir.resolve('cache')
+        Path jar = tempDir.resolve('com-foo.jar')
+        writeJar(jar, ['com/foo/A.class', 'com/foo/B.class'])
+        new JarLayoutOptimizer(['com/foo/B.class'], cache).optimize(jar)
+        def previousBuild = Files.list(cache).withCloseable { it.toList() }
+
+        writeJar(jar, ['com/foo/A.class', 'com/foo/B.class', 'com/foo/C.class'])
+        def optimizer = new JarLayoutOptimizer(['com/foo/B.class'], cache)
+        optimizer.optimize(jar)
+        optimizer.pruneCache()
+
+        def currentBuild = Files.list(cache).withCloseable { it.toList() }
+        assertEquals(1, currentBuild.size())
+        assertFalse(currentBuild.any { it in previousBuild })
+    }
+
+    private static void writeJar(Path jar, List<String> entries) {
+        def manifest = new Manifest()
+        manifest.mainAttributes.put(Attributes.Name.MANIFEST_VERSION, '1.0')
+        new JarOutputStream(Files.newOutputStream(jar), manifest).withCloseable { output ->
+            entries.each {
+                output.putNextEntry(new JarEntry(it))
+                output.write(it.bytes)
+                output.closeEntry()
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.gradle.plugins.nbm
+
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.zip.ZipEntry
+import java.util.zip.ZipFile
+import java.util.zip.ZipOutputStream
+
+import static org.junit.jupiter.api.Assertions.assertEquals
+import static org.junit.jupiter.api.Assertions.assertFalse
+import static org.junit.jupiter.api.Assertions.assertNull
+
+public class LocaleJarSplitterTest {
+
+    @TempDir
+    Path tempDir
+
+    // only variants of a bundle present in the JAR are localized
+    @Test
+    public void detectsLocaleSuffix() {
+        def names = ['com/foo/Bundle.properties', 'com/foo/Bundle_pt.properties', 'com/foo/Bundle_nb.properties',
+                     'com/foo/My_Config.properties'] as Set
+        assertEquals('ja', LocaleJarSplitter.localeSuffix('com/foo/Bundle_ja.properties', names))
+        assertEquals('pt_BR', LocaleJarSplitter.localeSuffix('com/foo/Bundle_pt_BR.properties', names))
+        assertEquals('nb_ja', LocaleJarSplitter.localeSuffix('com/foo/Bundle_nb_ja.properties', names))
+        assertNull(LocaleJarSplitter.localeSuffix('com/foo/My_Config.properties', names))
+        assertEquals('ja', LocaleJarSplitter.localeSuffix('com/foo/My_Config_ja.properties', names))
+        assertNull(LocaleJarSplitter.localeSuffix('com/foo/Other_ja.properties', names))
+        assertNull(LocaleJarSplitter.localeSuffix('com/foo/Bundle_ja.html', names))
+    }
+
+    @Test
+    public void movesLocalizedBundlesIntoLocaleJars() {
+        Path modules = tempDir.resolve('modules')
+        Files.createDirectories(modules.resolve('locale'))
+        Path staleJar = modules.resolve('locale/com-foo-acme_fr.jar')
+        Files.write(staleJar, new byte[0])
+        Path moduleJar = modules.resolve('com-foo-acme.jar')
+        moduleJar.withOutputStream { output ->
+            new ZipOutputStream(output).withCloseable { zip ->
+                ['META-INF/MANIFEST.MF', 'com/foo/Acme.class', 'com/foo/Bundle.properties',
+                 'com/foo/Bundle_ja.properties', 'com/foo/Bundle_de.properties', 'com/foo/impl/Bundle_ja.properties'].each {
+                    zip.putNextEntry(new ZipEntry(it))
+                    zip.write(it.bytes)
+                    zip.closeEntry()
+                }
+            }
+        }
+
+        def localeJars = LocaleJarSplitter.split(moduleJar)
+
+        assertEquals([de: modules.resolve('locale/com-foo-acme_de.jar'), ja: modules.resolve('locale/com-foo-acme_ja.jar')], localeJars)
+        assertEquals(['META-INF/MANIFEST.MF', 'com/foo/Acme.class', 'com/foo/Bundle.properties', 'com/foo/impl/Bundle_ja.properties'],
+            entries(moduleJar))
+        assertEquals(['META-INF/MANIFEST.MF', 'com/foo/Bundle_ja.properties'], entries(localeJars.ja))
+        assertEquals('com/foo/Bundle_ja.properties', new ZipFile(localeJars.ja.toFile()).withCloseable {
+            it.getInputStream(it.getEntry('com/foo/Bundle_ja.properties')).text
+        })
+        assertFalse(Files.exists(staleJar))
+    }
+
+    private static List<String> entries(Path jar) {
+        new ZipFile(jar.toFile()).withCloseable { zip -> zip.entries().collect { it.name } }
+    }
+}
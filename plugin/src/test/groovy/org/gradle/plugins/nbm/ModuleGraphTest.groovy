@@ -0,0 +1,53 @@
+package org.gradle.plugins.nbm
+
+import org.junit.jupiter.api.Test
+
+import static org.junit.jupiter.api.Assertions.assertEquals
+
+public class ModuleGraphTest {
+
+    @Test
+    public void parsesModuleDependencies() {
+        assertEquals(['org.openide.util', 'org.openide.modules', 'com.foo.impl'],
+            ModuleGraph.parseDependencies('org.openide.util/1 > 8.0, org.openide.modules > 7.0, com.foo.impl = 1'))
+        assertEquals('org.openide.util', ModuleGraph.codeNameBase('org.openide.util/1'))
+    }
+
+    // cycles are reported once per strongly connected component, external modules are ignored
+    @Test
+    public void findsCycles() {
+        def graph = graph(
+            a: ['b', 'org.openide.util'],
+            b: ['c'],
+            c: ['a'],
+            d: ['d'],
+            e: ['a'])
+
+        assertEquals([['a', 'b', 'c'] as Set, ['d'] as Set] as Set, graph.findCycles() as Set)
+    }
+
+    // a regular module only needed by modules not enabled at startup would not be enabled as autoload,
+    // modules still needed by enabled modules are no candidates
+    @Test
+    public void findsAutoloadCandidates() {
+        def graph = graph(
+            app: ['lib', 'shared'],
+            other: ['shared'],
+            lib: ['libImpl'],
+            libImpl: [],
+            shared: [])
+        graph.add(new ModuleGraph.Module('api', ModuleGraph.Kind.AUTOLOAD, ['unused']))
+        graph.add(new ModuleGraph.Module('unused', ModuleGraph.Kind.REGULAR, ['unusedImpl']))
+        graph.add(new ModuleGraph.Module('unusedImpl', ModuleGraph.Kind.AUTOLOAD, []))
+
+        assertEquals(['app', 'lib', 'libImpl', 'other', 'shared', 'unused', 'unusedImpl'] as Set, graph.startupSet)
+        assertEquals(['app', 'lib', 'libImpl', 'shared'] as Set, graph.getEnablementClosure('app'))
+        assertEquals([unused: ['unused', 'unusedImpl'] as Set], graph.autoloadCandidates)
+    }
+
+    private static ModuleGraph graph(Map<String, List<String>> dependencies) {
+        def graph = new ModuleGraph()
+        dependencies.each { name, deps -> graph.add(new ModuleGraph.Module(name, ModuleGraph.Kind.REGULAR, deps)) }
+        return graph
+    }
+}
@@ -2,11 +2,14 @@ package org.gradle.plugins.nbm
 
 import org.gradle.api.Project
 import org.gradle.api.Task
+import org.gradle.api.attributes.LibraryElements
 import org.gradle.api.internal.artifacts.configurations.Configurations
 import org.gradle.api.plugins.JavaPlugin
 import org.gradle.testfixtures.ProjectBuilder
 import org.junit.jupiter.api.Test
 
+import java.nio.file.Files
+
 import static org.hamcrest.MatcherAssert.assertThat
 import static org.hamcrest.Matchers.empty
 import static org.hamcrest.Matchers.equalTo
@@ -39,6 +42,165 @@ public class NbmPluginTest {
         assertTrue(netbeansTaskDeps.contains(project.tasks.jar))
     }
 
+    // class-data sharing archive is recorded from the module directory, run uses it only on request
+    @Test
+    public void checkCdsArchiveTask() {
+        Project project = ProjectBuilder.builder().build()
+        project.project.plugins.apply(JavaPlugin)
+        project.project.plugins.apply(NbmPlugin)
+
+        def cdsTask = project.tasks.getByName(NbmPlugin.CDS_ARCHIVE_TASK)
+        def runTask = project.tasks.run
+
+        assertTrue(cdsTask.getTaskDependencies().getDependencies(cdsTask).contains(project.tasks.netbeans))
+        assertFalse(runTask.getTaskDependencies().getDependencies(runTask).contains(cdsTask))
+
+        project.nbm.useCdsArchive = true
+        assertTrue(runTask.getTaskDependencies().getDependencies(runTask).contains(cdsTask))
+    }
+
+    // the archive is recorded for the JDK of the launcher, changing the JDK changes the task inputs
+    @Test
+    public void checkCdsArchiveJdkInput() {
+        File installation = Files.createTempDirectory('netbeans').toFile()
+        File jdk = new File(installation, 'jdk')
+        new File(jdk, 'release').with { parentFile.mkdirs(); text = 'JAVA_VERSION="17.0.9"' }
+        new File(installation, 'etc/netbeans.conf').with { parentFile.mkdirs(); text = "netbeans_jdkhome=\"${jdk}\"" }
+
+        Project project = ProjectBuilder.builder().build()
+        project.extensions.extraProperties.set('netBeansExecutable', new File(installation, 'bin/netbeans').path)
+        project.project.plugins.apply(JavaPlugin)
+        project.project.plugins.apply(NbmPlugin)
+
+        CdsArchiveTask cdsTask = project.tasks.getByName(NbmPlugin.CDS_ARCHIVE_TASK)
+        assertEquals(jdk.path, cdsTask.jdkHome.get())
+        assertEquals(new File(jdk, 'release'), cdsTask.jdkReleaseFile.get().asFile)
+    }
+
+    // hot reload pushes the module directory created by netbeans task into the instance using the test user directory
+    @Test
+    public void checkHotReloadTask() {
+        Project project = ProjectBuilder.builder().build()
+        project.project.plugins.apply(JavaPlugin)
+        project.project.plugins.apply(NbmPlugin)
+
+        def hotReloadTask = project.tasks.getByName(NbmPlugin.HOT_RELOAD_TASK)
+        assertTrue(hotReloadTask instanceof HotReloadTask)
+        assertTrue(hotReloadTask.getTaskDependencies().getDependencies(hotReloadTask).contains(project.tasks.netbeans))
+        assertEquals(project.tasks.netbeans.moduleBuildDir.get(), hotReloadTask.moduleBuildDir.get())
+        assertEquals(project.file("build/${NetBeansTask.TEST_USER_DIR_NAME}"), hotReloadTask.userDir.get().asFile)
+        assertEquals(project.file('build/runHot/reloaded-jars.properties'), hotReloadTask.stateFile.get().asFile)
+    }
+
+    // module system tests run against the module directory created by netbeans task
+    @Test
+    public void checkModuleTestTask() {
+        Project project = ProjectBuilder.builder().build()
+        project.project.plugins.apply(JavaPlugin)
+        project.project.plugins.apply(NbmPlugin)
+
+        def moduleTestTask = project.tasks.getByName(NbmPlugin.MODULE_TEST_TASK)
+        assertTrue(moduleTestTask instanceof ModuleTestTask)
+        assertTrue(moduleTestTask.getTaskDependencies().getDependencies(moduleTestTask).contains(project.tasks.netbeans))
+        assertEquals(0, moduleTestTask.forkEvery)
+
+        // the module is loaded from its cluster only, the tests of the test source set are not run
+        def moduleTestSourceSet = project.sourceSets.getByName(NbmPlugin.MODULE_TEST_SOURCE_SET_NAME)
+        def classpath = moduleTestTask.classpath.files
+        assertTrue(classpath.containsAll(moduleTestSourceSet.output.classesDirs.files))
+        assertFalse(classpath.any { it in project.sourceSets.test.output.classesDirs.files })
+        assertFalse(classpath.any { it in project.sourceSets.main.output.classesDirs.files })
+        assertFalse(classpath.contains(project.tasks.jar.archiveFile.get().asFile))
+        assertFalse(moduleTestSourceSet.compileClasspath.files.any { it in project.sourceSets.main.output.classesDirs.files })
+
+        // the module system is booted by the generated extension
+        def bootTask = project.tasks.getByName(NbmPlugin.MODULE_TEST_BOOT_TASK)
+        assertTrue(moduleTestSourceSet.java.srcDirs.contains(bootTask.sourceDir.get().asFile))
+        assertEquals('true', moduleTestTask.systemProperties['junit.jupiter.extensions.autodetection.enabled'])
+    }
+
+    @Test
+    public void checkModuleGraphTask() {
+        Project root = ProjectBuilder.builder().build()
+        Project first = ProjectBuilder.builder().withName('first').withParent(root).build()
+        Project second = ProjectBuilder.builder().withName('second').withParent(root).build()
+        Project plain = ProjectBuilder.builder().withName('plain').withParent(root).build()
+        [first, second].each {
+            it.plugins.apply(JavaPlugin)
+            it.plugins.apply(NbmPlugin)
+        }
+        plain.plugins.apply(JavaPlugin)
+        assertNull(root.tasks.findByName(NbmPlugin.MODULE_GRAPH_TASK))
+
+        root.plugins.apply(NbmModuleGraphPlugin)
+        def graphTask = root.tasks.getByName(NbmPlugin.MODULE_GRAPH_TASK)
+        assertTrue(graphTask instanceof ModuleGraphTask)
+        def dependencies = graphTask.getTaskDependencies().getDependencies(graphTask)
+        assertTrue(dependencies.containsAll([first.tasks.netbeans, second.tasks.netbeans,
+                                             first.tasks.generateModuleManifest, second.tasks.generateModuleManifest]))
+        assertEquals([first, second].collect { it.tasks.generateModuleManifest.generatedManifestFile.get().asFile } as Set,
+            graphTask.manifestFiles.files)
+    }
+
+    // API variant publishes a JAR with the public packages only
+    @Test
+    public void checkApiElements() {
+        Project project = ProjectBuilder.builder().build()
+        project.project.plugins.apply(JavaPlugin)
+        project.project.plugins.apply(NbmPlugin)
+
+        def apiElements = project.configurations.getByName(NbmPlugin.API_ELEMENTS_CONFIGURATION_NAME)
+        assertEquals('jar', apiElements.attributes.getAttribute(LibraryElements.LIBRARY_ELEMENTS_ATTRIBUTE).name)
+        assertEquals(['jar'], apiElements.outgoing.artifacts*.type)
+        // distinguished from the apiElements of the java plugin, and requested by the compile classpath
+        assertEquals(NbmPlugin.NBM_API_PUBLIC_PACKAGES, apiElements.attributes.getAttribute(NbmPlugin.NBM_API_ATTRIBUTE))
+        assertNull(project.configurations.apiElements.attributes.getAttribute(NbmPlugin.NBM_API_ATTRIBUTE))
+        assertEquals(NbmPlugin.NBM_API_PUBLIC_PACKAGES,
+            project.configurations.compileClasspath.attributes.getAttribute(NbmPlugin.NBM_API_ATTRIBUTE))
+
+        def publicPackages = ['com.foo.api.*', 'com.foo.spi.**']
+        assertTrue(NmbPluginTaskConfigurer.isInPublicPackage('com/foo/api', publicPackages))
+        assertFalse(NmbPluginTaskConfigurer.isInPublicPackage('com/foo/api/impl', publicPackages))
+        assertTrue(NmbPluginTaskConfigurer.isInPublicPackage('com/foo/spi', publicPackages))
+        assertTrue(NmbPluginTaskConfigurer.isInPublicPackage('com/foo/spi/sub', publicPackages))
+        assertFalse(NmbPluginTaskConfigurer.isInPublicPackage('com/foo/spix', publicPackages))
+    }
+
+    // NBM projects compile against the API JAR of other NBM projects, other projects keep the java plugin's variant
+    @Test
+    public void selectsApiVariant() {
+        Project root = ProjectBuilder.builder().build()
+        Project api = ProjectBuilder.builder().withName('api').withParent(root).build()
+        Project consumer = ProjectBuilder.builder().withName('consumer').withParent(root).build()
+        Project plain = ProjectBuilder.builder().withName('plain').withParent(root).build()
+        [api, consumer, plain]*.plugins*.apply(JavaPlugin)
+        [api, consumer]*.plugins*.apply(NbmPlugin)
+        [consumer, plain].each { it.dependencies.add(JavaPlugin.IMPLEMENTATION_CONFIGURATION_NAME, api) }
+
+        assertEquals([NbmPlugin.API_ELEMENTS_CONFIGURATION_NAME], selectedVariants(consumer, api))
+        assertEquals([JavaPlugin.API_ELEMENTS_CONFIGURATION_NAME], selectedVariants(plain, api))
+    }
+
+    // implementation dependencies compile against the full JAR including the non-public packages
+    @Test
+    public void selectsFullJarForImplementationDependency() {
+        Project root = ProjectBuilder.builder().build()
+        Project api = ProjectBuilder.builder().withName('api').withParent(root).build()
+        Project friend = ProjectBuilder.builder().withName('friend').withParent(root).build()
+        [api, friend]*.plugins*.apply(JavaPlugin)
+        [api, friend]*.plugins*.apply(NbmPlugin)
+        friend.dependencies.add(NbmPlugin.IMPLEMENTATION_CONFIGURATION_NAME, api)
+
+        assertEquals([JavaPlugin.API_ELEMENTS_CONFIGURATION_NAME], selectedVariants(friend, api))
+    }
+
+    private static List<String> selectedVariants(Project consumer, Project producer) {
+        def result = consumer.configurations.getByName(JavaPlugin.COMPILE_CLASSPATH_CONFIGURATION_NAME).incoming.resolutionResult
+        def component = result.allComponents.find { it.id.displayName == "project ${producer.path}" }
+        assertNotNull(component, "${producer.path} not resolved for ${consumer.path}")
+        component.variants*.displayName
+    }
+
     @Test
     public void createsConfigurations() {
         Project project = ProjectBuilder.builder().build()
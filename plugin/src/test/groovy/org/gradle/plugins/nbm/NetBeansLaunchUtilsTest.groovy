@@ -0,0 +1,109 @@
+package org.gradle.plugins.nbm
+
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+import static org.junit.jupiter.api.Assertions.assertEquals
+import static org.junit.jupiter.api.Assertions.assertFalse
+import static org.junit.jupiter.api.Assertions.assertNull
+import static org.junit.jupiter.api.Assertions.assertTrue
+
+public class NetBeansLaunchUtilsTest {
+
+    @TempDir
+    Path tempDir
+
+    @Test
+    public void parsesStartupLog() {
+        def log = NetBeansLaunchUtils.parseStartupLog([
+            'Picked up JAVA_TOOL_OPTIONS',
+            '@120ms - Preparation finished',
+            '@1450ms - Modules initialized',
+            '@1500ms - Modules initialized',
+        ])
+        assertEquals([('Preparation finished'): 120L, ('Modules initialized'): 1450L], log)
+    }
+
+    @Test
+    public void findsBootErrors() {
+        def errors = NetBeansLaunchUtils.findBootErrors([
+            'INFO [org.netbeans.core.startup.NbEvents]: Turning on modules:',
+            'SEVERE [global]',
+            'java.lang.IllegalStateException: broken layer',
+            '\tat com.foo.Acme.run(Acme.java:10)',
+            'Caused: java.io.IOException: no layer',
+            'INFO [org.netbeans.modules.autoupdate.services.Utilities]: Cannot check for updates',
+            'java.net.UnknownHostException: updates.netbeans.org',
+            '\tat java.net.InetAddress.getAllByName(InetAddress.java:1281)',
+            'WARNING [org.openide.filesystems.Ordering]: Not all children of Menu/File marked with position',
+            'Warning - could not install some modules:',
+        ])
+        assertEquals(['SEVERE [global]', 'java.lang.IllegalStateException: broken layer', 'Caused: java.io.IOException: no layer',
+                      'WARNING [org.openide.filesystems.Ordering]: Not all children of Menu/File marked with position',
+                      'Warning - could not install some modules:'], errors)
+    }
+
+    // used heap is summed over the generations of the collector
+    @Test
+    public void parsesHeapUsage() {
+        assertEquals(3072L, NetBeansLaunchUtils.parseHeapUsedKb([
+            '[1.234s][info][gc,heap,exit]  def new generation   total 9216K, used 1024K [0x0, 0x0, 0x0)',
+            '[1.234s][info][gc,heap,exit]  tenured generation   total 20480K, used 2048K [0x0, 0x0, 0x0)',
+            '[1.234s][info][gc,heap,exit]  Metaspace       used 6000K, committed 6144K, reserved 1056768K',
+        ]))
+        assertNull(NetBeansLaunchUtils.parseHeapUsedKb([]))
+    }
+
+    @Test
+    public void detectsUnifiedLoggingSupport() {
+        Files.write(tempDir.resolve('release'), ['JAVA_VERSION="1.8.0_392"'])
+        assertFalse(NetBeansLaunchUtils.supportsUnifiedLogging(tempDir))
+        Files.write(tempDir.resolve('release'), ['JAVA_VERSION="17.0.9"'])
+        assertTrue(NetBeansLaunchUtils.supportsUnifiedLogging(tempDir))
+    }
+
+    // netbeans_jdkhome of the installation wins over JAVA_HOME
+    @Test
+    public void findsLauncherJdkHome() {
+        assertEquals(tempDir.resolve('netbeans/etc/netbeans.conf').toAbsolutePath(),
+            NetBeansLaunchUtils.launcherConfFile(tempDir.resolve('netbeans/bin/netbeans').toString()))
+
+        assertEquals('/opt/jdk-env', NetBeansLaunchUtils.findLauncherJdkHome(null, '/opt/jdk-env'))
+        assertEquals('/opt/jdk-env', NetBeansLaunchUtils.findLauncherJdkHome('netbeans_default_userdir="x"', '/opt/jdk-env'))
+        assertNull(NetBeansLaunchUtils.findLauncherJdkHome(null, null))
+        assertEquals('/opt/jdk-17', NetBeansLaunchUtils.findLauncherJdkHome(
+            '#netbeans_jdkhome="/opt/jdk-commented"\r\nnetbeans_jdkhome="/opt/jdk-17"\r\n', '/opt/jdk-env'))
+    }
+
+    // the launcher runs java as a child, which has to be killed as well
+    @Test
+    public void destroysProcessTree() {
+        if (System.getProperty('os.name').toLowerCase(Locale.ROOT).contains('windows')) {
+            return
+        }
+        Process launcher = new ProcessBuilder('sh', '-c', 'sleep 300 & echo $!; wait').start()
+        String childPid = new BufferedReader(new InputStreamReader(launcher.inputStream)).readLine()
+
+        NetBeansLaunchUtils.destroyProcessTree(launcher)
+
+        assertFalse(launcher.isAlive())
+        assertFalse(isAlive(childPid))
+    }
+
+    private static boolean isAlive(String pid) {
+        // the killed child may stay a zombie until it is reaped
+        for (int attempt = 0; attempt < 50; attempt++) {
+            def ps = new ProcessBuilder('ps', '-o', 'stat=', '-p', pid).start()
+            String state = ps.inputStream.text.trim()
+            ps.waitFor()
+            if (state.isEmpty() || state.startsWith('Z')) {
+                return false
+            }
+            Thread.sleep(100)
+        }
+        return true
+    }
+}
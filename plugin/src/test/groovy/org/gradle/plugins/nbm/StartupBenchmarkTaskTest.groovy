@@ -0,0 +1,43 @@
+package org.gradle.plugins.nbm
+
+import org.junit.jupiter.api.Test
+
+import static org.junit.jupiter.api.Assertions.assertEquals
+
+public class StartupBenchmarkTaskTest {
+
+    @Test
+    public void computesStatistics() {
+        assertEquals([min: 1L, max: 5L, median: 3d, mean: 3d, p90: 5L, stddev: 1.4d],
+            StartupBenchmarkTask.statistics([5L, 1L, 3L, 2L, 4L]))
+        assertEquals(15d, StartupBenchmarkTask.statistics([10L, 20L]).median)
+    }
+
+    @Test
+    public void computesStepDurations() {
+        assertEquals([('Preparation finished'): 100L, ('Modules initialized'): 150L],
+            StartupBenchmarkTask.stepDurations([('Preparation finished'): 100L, ('Modules initialized'): 250L]))
+    }
+
+    // only medians slower than the baseline by more than the threshold are regressions
+    @Test
+    public void findsRegressions() {
+        def previous = [cold: [wallTimeMs: [median: 1000d]], warm: [wallTimeMs: [median: 500d]]]
+        def current = [cold: [wallTimeMs: [median: 1200d]], warm: [wallTimeMs: [median: 520d], modulesInitializedMs: [median: 300d]]]
+
+        assertEquals(['cold wallTimeMs median 1200.0 ms, baseline 1000.0 ms'],
+            StartupBenchmarkTask.findRegressions([previous], current, 10d))
+        assertEquals([], StartupBenchmarkTask.findRegressions([previous], current, 25d))
+        assertEquals([], StartupBenchmarkTask.findRegressions([], current, 10d))
+    }
+
+    // the baseline is the median of the history entries, a single fast or slow entry does not decide
+    @Test
+    public void comparesWithMedianOfHistory() {
+        def history = [1000d, 700d, 1100d, 1050d, 2000d].collect { [cold: [wallTimeMs: [median: it]]] }
+
+        assertEquals(['cold wallTimeMs median 1200.0 ms, baseline 1050.0 ms'],
+            StartupBenchmarkTask.findRegressions(history, [cold: [wallTimeMs: [median: 1200d]]], 10d))
+        assertEquals([], StartupBenchmarkTask.findRegressions(history, [cold: [wallTimeMs: [median: 1150d]]], 10d))
+    }
+}
@@ -0,0 +1,143 @@
+package org.gradle.plugins.nbm
+
+import org.apache.tools.ant.Project
+import org.apache.tools.ant.types.FileSet
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import org.netbeans.nbbuild.MakeListOfNBM
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.attribute.FileTime
+import java.util.jar.Attributes
+import java.util.jar.JarOutputStream
+import java.util.jar.Manifest
+import java.util.zip.CRC32
+import java.util.zip.ZipEntry
+
+import static org.junit.jupiter.api.Assertions.assertEquals
+
+public class UpdateTrackingWriterTest {
+
+    @TempDir
+    Path tempDir
+
+    // update tracking lists all cluster files with CRCs in genlist format
+    @Test
+    public void writesUpdateTracking() {
+        Path cluster = tempDir.resolve('cluster')
+        byte[] largeContent = new byte[2 * 1024 * 1024]
+        new Random(1).nextBytes(largeContent)
+        write(cluster.resolve('modules/com-foo-acme.jar'), largeContent)
+        write(cluster.resolve('modules/ext/lib.jar'), 'lib'.bytes)
+        write(cluster.resolve('config/Modules/com-foo-acme.xml'), '<module/>'.bytes)
+
+        def writer = new UpdateTrackingWriter(cluster, tempDir.resolve('cache.properties'))
+        Path trackingFile = writer.write('com.foo.acme/1', '1.0', 42L)
+
+        assertEquals(cluster.resolve('update_tracking/com-foo-acme.xml'), trackingFile)
+        def nl = '\n'
+        assertEquals('<?xml version="1.0" encoding="UTF-8"?>' + nl +
+            '<module codename="com.foo.acme/1">' + nl +
+            '    <module_version install_time="42" last="true" origin="installer" specification_version="1.0">' + nl +
+            "        <file crc=\"${crc('<module/>'.bytes)}\" name=\"config/Modules/com-foo-acme.xml\"/>" + nl +
+            "        <file crc=\"${crc(largeContent)}\" name=\"modules/com-foo-acme.jar\"/>" + nl +
+            "        <file crc=\"${crc('lib'.bytes)}\" name=\"modules/ext/lib.jar\"/>" + nl +
+            '    </module_version>' + nl +
+            '</module>' + nl,
+            trackingFile.text)
+    }
+
+    // cached CRC is used as long as the size and modification time of the file are the same
+    @Test
+    public void reusesCachedCrc() {
+        Path cluster = tempDir.resolve('cluster')
+        Path jar = cluster.resolve('modules/com-foo-acme.jar')
+        write(jar, 'first'.bytes)
+        def writer = new UpdateTrackingWriter(cluster, tempDir.resolve('cache.properties'))
+        writer.write('com.foo.acme', '1.0', 0L)
+
+        def lastModified = Files.getLastModifiedTime(jar)
+        write(jar, 'other'.bytes)
+        Files.setLastModifiedTime(jar, lastModified)
+        def trackingFile = writer.write('com.foo.acme', '1.0', 0L)
+        assert trackingFile.text.contains("crc=\"${crc('first'.bytes)}\"")
+
+        Files.setLastModifiedTime(jar, FileTime.fromMillis(lastModified.toMillis() + 2000))
+        trackingFile = writer.write('com.foo.acme', '1.0', 0L)
+        assert trackingFile.text.contains("crc=\"${crc('other'.bytes)}\"")
+    }
+
+    // a JAR rewritten with other settings keeps its modification time, the cached CRC is not used
+    @Test
+    public void ignoresCachedCrcOfOtherLayout() {
+        Path cluster = tempDir.resolve('cluster')
+        Path jar = cluster.resolve('modules/com-foo-acme.jar')
+        write(jar, 'first'.bytes)
+        new UpdateTrackingWriter(cluster, tempDir.resolve('cache.properties'), 'splitLocaleJars=false').write('com.foo.acme', '1.0', 0L)
+
+        def lastModified = Files.getLastModifiedTime(jar)
+        write(jar, 'other'.bytes)
+        Files.setLastModifiedTime(jar, lastModified)
+        def trackingFile = new UpdateTrackingWriter(cluster, tempDir.resolve('cache.properties'), 'splitLocaleJars=true')
+            .write('com.foo.acme', '1.0', 0L)
+        assert trackingFile.text.contains("crc=\"${crc('other'.bytes)}\"")
+    }
+
+    // same output as genlist of the harness, apart from the documented differences
+    @Test
+    public void matchesGenlist() {
+        Path cluster = tempDir.resolve('cluster')
+        Path moduleJar = cluster.resolve('modules/com-foo-acme.jar')
+        Files.createDirectories(moduleJar.parent)
+        def manifest = new Manifest()
+        manifest.mainAttributes[Attributes.Name.MANIFEST_VERSION] = '1.0'
+        manifest.mainAttributes.putValue('OpenIDE-Module', 'com.foo.acme/1')
+        manifest.mainAttributes.putValue('OpenIDE-Module-Specification-Version', '1.2')
+        new JarOutputStream(Files.newOutputStream(moduleJar), manifest).withCloseable { jar ->
+            jar.putNextEntry(new ZipEntry('com/foo/acme/Acme.class'))
+            jar.write('class'.bytes)
+            jar.closeEntry()
+        }
+        write(cluster.resolve('modules/ext/lib.jar'), 'lib'.bytes)
+        write(cluster.resolve('modules/locale/com-foo-acme_ja.jar'), 'ja'.bytes)
+        write(cluster.resolve('config/Modules/com-foo-acme.xml'), '<module/>'.bytes)
+        write(cluster.resolve('.lastModified'), new byte[0])
+
+        def antProject = new Project()
+        antProject.init()
+        def genlist = new MakeListOfNBM()
+        genlist.project = antProject
+        genlist.outputfiledir = cluster.toFile()
+        genlist.module = 'modules' + File.separator + 'com-foo-acme.jar'
+        FileSet fileSet = genlist.createFileSet()
+        fileSet.dir = cluster.toFile()
+        fileSet.includes = '**'
+        genlist.execute()
+        Path trackingFile = cluster.resolve('update_tracking/com-foo-acme.xml')
+        String genlistOutput = trackingFile.text
+        Files.delete(trackingFile)
+
+        new UpdateTrackingWriter(cluster, null).write('com.foo.acme/1', '1.2', 42L)
+
+        assertEquals(comparable(genlistOutput), comparable(trackingFile.text))
+    }
+
+    private static List<String> comparable(String trackingXml) {
+        def lines = trackingXml.readLines()*.replaceAll(/install_time="\d+"/, 'install_time=""')
+        def files = lines.findAll { it.trim().startsWith('<file ') }
+        lines.removeAll(files)
+        lines + files.sort()
+    }
+
+    private static void write(Path file, byte[] content) {
+        Files.createDirectories(file.parent)
+        Files.write(file, content)
+    }
+
+    private static long crc(byte[] content) {
+        def crc = new CRC32()
+        crc.update(content)
+        crc.value
+    }
+}